@@ -0,0 +1,27 @@
+package com.trading.blotter.config;
+
+import com.trading.blotter.util.InMemoryElasticsearchOperations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+
+/**
+ * Replaces the Elasticsearch operations with an in-memory stand-in, so the app can be load tested
+ * on one box without a cluster. Jobs and endpoints going through the low-level REST client
+ * (template management, bulk ingest, raw search) still need a real cluster and are switched off
+ * in application-inmemory-es.yml where they run on their own.
+ */
+@Configuration
+@Profile("inmemory-es")
+public class InMemoryElasticsearchConfig {
+
+    @Bean
+    @Primary
+    public ReactiveElasticsearchOperations inMemoryElasticsearchOperations(ElasticsearchConverter converter,
+                                                                           InMemoryElasticsearchProperties properties) {
+        return InMemoryElasticsearchOperations.create(converter, properties);
+    }
+}
@@ -0,0 +1,28 @@
+package com.trading.blotter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-memory Elasticsearch stand-in, used with the inmemory-es profile.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "blotter.inmemory-es")
+public class InMemoryElasticsearchProperties {
+
+    // Generated trades held in memory (400 fields each)
+    private int trades = 2000;
+
+    // Trades are generated from this seed, so every run searches the same data
+    private long seed = 42;
+
+    // Added to every search, as the round trip to a cluster would be
+    private Duration responseLatency = Duration.ofMillis(5);
+
+    // Random extra latency, uniformly distributed between zero and this
+    private Duration latencyJitter = Duration.ZERO;
+}
@@ -0,0 +1,326 @@
+package com.trading.blotter.util;
+
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.json.JsonData;
+import com.trading.blotter.config.InMemoryElasticsearchProperties;
+import com.trading.blotter.model.TradeDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHits;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHitsImpl;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.DocValueField;
+import org.springframework.data.elasticsearch.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Stand-in for {@link ReactiveElasticsearchOperations} holding generated trades in memory, for
+ * load tests without a cluster (profile inmemory-es).
+ * <p>
+ * Answers the searches the blotter sends: match_all, term and range queries combined in a bool
+ * must/filter, field sorts with search_after, size, total hit tracking, source filtering and doc
+ * value fields. Hits are read through the real converter, so the mapping cost stays in the
+ * measurement. Aggregations are not supported, and every other operation throws.
+ */
+@Slf4j
+public final class InMemoryElasticsearchOperations implements InvocationHandler {
+
+    private static final String POINT_IN_TIME_ID = "in-memory";
+    private static final int DEFAULT_SIZE = 10;
+    private static final int DEFAULT_TRACK_TOTAL_HITS_UP_TO = 10000;
+
+    private final ElasticsearchConverter converter;
+    private final InMemoryElasticsearchProperties properties;
+    private final String index;
+    private final List<Document> documents;
+
+    private record Match(Document document, Object[] sortValues) {
+    }
+
+    public static ReactiveElasticsearchOperations create(ElasticsearchConverter converter,
+                                                         InMemoryElasticsearchProperties properties) {
+        return (ReactiveElasticsearchOperations) Proxy.newProxyInstance(
+                ReactiveElasticsearchOperations.class.getClassLoader(),
+                new Class<?>[]{ReactiveElasticsearchOperations.class},
+                new InMemoryElasticsearchOperations(converter, properties));
+    }
+
+    private InMemoryElasticsearchOperations(ElasticsearchConverter converter, InMemoryElasticsearchProperties properties) {
+        this.converter = converter;
+        this.properties = properties;
+        this.index = indexCoordinates(TradeDocument.class).getIndexName();
+        Random random = new Random(properties.getSeed());
+        this.documents = IntStream.rangeClosed(1, properties.getTrades())
+                .mapToObj(i -> DataGenerator.createTrade(i, random))
+                .map(trade -> {
+                    Document document = converter.mapObject(trade);
+                    document.setId(trade.getTradeId());
+                    return document;
+                })
+                .toList();
+        log.info("In-memory Elasticsearch stand-in holding {} trades, response latency {} (+ up to {})",
+                documents.size(), properties.getResponseLatency(), properties.getLatencyJitter());
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "searchForHits" -> searchForHits(args);
+            case "search" -> searchForHits(args).flatMapMany(ReactiveSearchHits::getSearchHits);
+            case "openPointInTime" -> Mono.just(POINT_IN_TIME_ID);
+            case "closePointInTime" -> Mono.just(true);
+            case "getIndexCoordinatesFor" -> indexCoordinates((Class<?>) args[0]);
+            case "getElasticsearchConverter" -> converter;
+            case "toString" -> "InMemoryElasticsearchOperations[" + documents.size() + " trades]";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw unsupported(method.getName());
+        };
+    }
+
+    private IndexCoordinates indexCoordinates(Class<?> type) {
+        return converter.getMappingContext().getRequiredPersistentEntity(type).getIndexCoordinates();
+    }
+
+    /**
+     * (query, type), (query, type, index), (query, entityType, resultType[, index]).
+     */
+    private Mono<ReactiveSearchHits<Object>> searchForHits(Object[] args) {
+        if (!(args[0] instanceof NativeQuery query)) {
+            return Mono.error(unsupported("non-native queries"));
+        }
+        if (!query.getAggregations().isEmpty()) {
+            return Mono.error(unsupported("aggregations"));
+        }
+        Class<?> resultType = args.length > 2 && args[2] instanceof Class<?> type ? type : (Class<?>) args[1];
+        return Mono.delay(latency())
+                .map(tick -> search(query, resultType));
+    }
+
+    private Duration latency() {
+        long jitter = properties.getLatencyJitter().toNanos();
+        return jitter <= 0 ? properties.getResponseLatency() :
+                properties.getResponseLatency().plusNanos(ThreadLocalRandom.current().nextLong(jitter + 1));
+    }
+
+    private ReactiveSearchHits<Object> search(NativeQuery query, Class<?> resultType) {
+        Predicate<Document> filter = matcher(query.getQuery());
+        List<SortOptions> sort = query.getSortOptions();
+        Comparator<Object[]> order = sortOrder(sort);
+
+        List<Match> matches = new ArrayList<>();
+        for (Document document : documents) {
+            if (filter.test(document)) {
+                matches.add(new Match(document, sortValues(document, sort)));
+            }
+        }
+        matches.sort(Comparator.comparing(Match::sortValues, order));
+
+        int from = 0;
+        if (query.getSearchAfter() != null && !query.getSearchAfter().isEmpty()) {
+            Object[] after = query.getSearchAfter().toArray();
+            while (from < matches.size() && order.compare(matches.get(from).sortValues(), after) <= 0) {
+                from++;
+            }
+        }
+        int size = query.getMaxResults() != null ? query.getMaxResults() : DEFAULT_SIZE;
+        List<SearchHit<Object>> hits = matches.subList(from, Math.min(matches.size(), from + size)).stream()
+                .map(match -> toSearchHit(match, query, resultType))
+                .toList();
+
+        long total = matches.size();
+        TotalHitsRelation relation = TotalHitsRelation.EQUAL_TO;
+        if (Boolean.FALSE.equals(query.getTrackTotalHits())) {
+            total = 0;
+            relation = TotalHitsRelation.OFF;
+        } else if (!Boolean.TRUE.equals(query.getTrackTotalHits())) {
+            int upTo = query.getTrackTotalHitsUpTo() != null ? query.getTrackTotalHitsUpTo() : DEFAULT_TRACK_TOTAL_HITS_UP_TO;
+            if (total > upTo) {
+                total = upTo;
+                relation = TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+            }
+        }
+
+        String pointInTimeId = query.getPointInTime() != null ? POINT_IN_TIME_ID : null;
+        return new ReactiveSearchHitsImpl<>(new SearchHitsImpl<>(total, relation, Float.NaN, null, pointInTimeId,
+                hits, null, null));
+    }
+
+    private SearchHit<Object> toSearchHit(Match match, NativeQuery query, Class<?> resultType) {
+        Document source = project(match.document(), query);
+        Object content = converter.read(resultType, source);
+        return new SearchHit<>(index, source.hasId() ? source.getId() : null, null, Float.NaN, match.sortValues(),
+                null, null, null, null, null, content);
+    }
+
+    /**
+     * Keeps the source filter includes (top level or one level under additionalFields), or the doc
+     * value fields. Like a cluster, stored_fields=_none_ drops _id, which the client can't map.
+     */
+    private static Document project(Document document, NativeQuery query) {
+        if (query.getStoredFields() != null && query.getStoredFields().contains("_none_")) {
+            throw new IllegalStateException("stored_fields=_none_ returns hits without _id, which can't be mapped");
+        }
+        List<DocValueField> docValueFields = query.getDocValueFields();
+        boolean docValuesOnly = docValueFields != null && !docValueFields.isEmpty();
+        List<String> includes;
+        if (docValuesOnly) {
+            includes = docValueFields.stream().map(DocValueField::field).toList();
+        } else if (query.getSourceFilter() != null && query.getSourceFilter().getIncludes() != null
+                && query.getSourceFilter().getIncludes().length > 0) {
+            includes = Arrays.asList(query.getSourceFilter().getIncludes());
+        } else {
+            return document;
+        }
+
+        Document projected = Document.create();
+        projected.setId(document.getId());
+        for (String include : includes) {
+            int dot = include.indexOf('.');
+            if (dot < 0) {
+                if (document.containsKey(include)) {
+                    projected.put(include, document.get(include));
+                }
+            } else if (document.get(include.substring(0, dot)) instanceof Map<?, ?> nested) {
+                String child = include.substring(dot + 1);
+                if (nested.containsKey(child)) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> target = (Map<String, Object>) projected.computeIfAbsent(
+                            include.substring(0, dot), key -> new LinkedHashMap<String, Object>());
+                    target.put(child, nested.get(child));
+                }
+            }
+        }
+        return projected;
+    }
+
+    private static Predicate<Document> matcher(co.elastic.clients.elasticsearch._types.query_dsl.Query query) {
+        if (query == null || query.isMatchAll()) {
+            return document -> true;
+        }
+        if (query.isBool()) {
+            BoolQuery bool = query.bool();
+            if (!bool.should().isEmpty() || !bool.mustNot().isEmpty()) {
+                throw unsupported("bool should/must_not clauses");
+            }
+            List<Predicate<Document>> clauses = new ArrayList<>();
+            bool.must().forEach(clause -> clauses.add(matcher(clause)));
+            bool.filter().forEach(clause -> clauses.add(matcher(clause)));
+            return document -> {
+                for (Predicate<Document> clause : clauses) {
+                    if (!clause.test(document)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (query.isTerm()) {
+            String field = query.term().field();
+            Object value = query.term().value()._get();
+            return document -> {
+                Object actual = document.get(field);
+                return actual != null && compare(actual, value) == 0;
+            };
+        }
+        if (query.isRange()) {
+            RangeQuery range = query.range();
+            String field = range.field();
+            Object gte = bound(range.gte());
+            Object gt = bound(range.gt());
+            Object lte = bound(range.lte());
+            Object lt = bound(range.lt());
+            return document -> {
+                Object actual = document.get(field);
+                return actual != null
+                        && (gte == null || compare(actual, gte) >= 0)
+                        && (gt == null || compare(actual, gt) > 0)
+                        && (lte == null || compare(actual, lte) <= 0)
+                        && (lt == null || compare(actual, lt) < 0);
+            };
+        }
+        throw unsupported(query._kind() + " queries");
+    }
+
+    private static Object bound(JsonData value) {
+        return value != null ? value.to(Object.class) : null;
+    }
+
+    private static Object[] sortValues(Document document, List<SortOptions> sort) {
+        Object[] values = new Object[sort.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = document.get(sortField(sort.get(i)));
+        }
+        return values;
+    }
+
+    /**
+     * Field sorts in order, missing values last whatever the direction (the Elasticsearch default).
+     */
+    private static Comparator<Object[]> sortOrder(List<SortOptions> sort) {
+        boolean[] descending = new boolean[sort.size()];
+        for (int i = 0; i < descending.length; i++) {
+            sortField(sort.get(i));
+            descending[i] = sort.get(i).field().order() == SortOrder.Desc;
+        }
+        return (left, right) -> {
+            for (int i = 0; i < descending.length; i++) {
+                Object a = left[i];
+                Object b = right[i];
+                int result;
+                if (a == null || b == null) {
+                    result = a == b ? 0 : (a == null ? 1 : -1);
+                } else {
+                    result = descending[i] ? compare(b, a) : compare(a, b);
+                }
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static String sortField(SortOptions sortOptions) {
+        if (!sortOptions.isField()) {
+            throw unsupported(sortOptions._kind() + " sorts");
+        }
+        return sortOptions.field().field();
+    }
+
+    // Numbers by value, anything else (keywords, yyyy-MM-dd dates) by its string form
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y) {
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static UnsupportedOperationException unsupported(String what) {
+        return new UnsupportedOperationException("Not supported by the in-memory Elasticsearch stand-in: " + what);
+    }
+}
@@ -0,0 +1,86 @@
+package com.trading.blotter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.trading.blotter.model.TradeDocument;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic data shared by the benchmarks, shaped like the trades DataGenerator loads.
+ */
+public final class BenchmarkFixtures {
+
+    // The columns a blotter grid shows by default, as sent in requestedFields
+    public static final List<String> BLOTTER_COLUMNS = List.of(
+            "tradeId", "book", "tradeDate", "instrument", "trader", "notional", "pnl", "mtm", "status");
+
+    private static final int ADDITIONAL_FIELDS = 380;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Configured like the application's mapper (Spring Boot defaults).
+     */
+    public static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    public static String tradeId(int index) {
+        return String.format("TRD%06d", index);
+    }
+
+    /**
+     * A trade with every core column and the 380 additional fields: 400 fields in total.
+     */
+    public static TradeDocument fullTrade(int index) {
+        Random random = new Random(index);
+        TradeDocument trade = projectedTrade(index);
+        trade.setCounterparty("CPTY-" + random.nextInt(20));
+        trade.setCurrency("USD");
+        trade.setTradeType("IRS");
+        trade.setSettlementDate(trade.getTradeDate().plusDays(2));
+        trade.setMaturityDate(trade.getTradeDate().plusYears(5 + random.nextInt(6)));
+        trade.setFixedRate(BigDecimal.valueOf(2.0 + random.nextDouble() * 2));
+        trade.setFloatingRate(BigDecimal.valueOf(2.0 + random.nextDouble() * 2));
+        trade.setDelta(BigDecimal.valueOf((random.nextDouble() - 0.5) * 2000));
+        trade.setGamma(BigDecimal.valueOf((random.nextDouble() - 0.5) * 100));
+        trade.setVega(BigDecimal.valueOf((random.nextDouble() - 0.5) * 1000));
+        trade.setTheta(BigDecimal.valueOf((random.nextDouble() - 0.5) * 50));
+
+        Map<String, Object> additionalFields = new HashMap<>();
+        for (int i = 1; i <= ADDITIONAL_FIELDS; i++) {
+            additionalFields.put("field" + i, "value_" + random.nextInt(1000));
+        }
+        trade.setAdditionalFields(additionalFields);
+        return trade;
+    }
+
+    /**
+     * A trade as returned for {@link #BLOTTER_COLUMNS}: the other properties are null.
+     */
+    public static TradeDocument projectedTrade(int index) {
+        Random random = new Random(index);
+        BigDecimal pnl = BigDecimal.valueOf((random.nextDouble() - 0.5) * 200000);
+        return TradeDocument.builder()
+                .tradeId(tradeId(index))
+                .book("BOOK-" + random.nextInt(10))
+                .tradeDate(LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365)))
+                .instrument("INSTR-" + random.nextInt(50))
+                .trader("TRADER-" + random.nextInt(25))
+                .notional(BigDecimal.valueOf(random.nextInt(9000000) + 1000000))
+                .pnl(pnl)
+                .mtm(pnl.multiply(BigDecimal.valueOf(1.05)))
+                .status("ACTIVE")
+                .build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.trading.blotter;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the blotter benchmarks with the GC profiler (allocation rate per operation) and writes the
+ * results as JSON, so two commits can be compared run against run.
+ * <p>
+ * Started by {@code mvn -Pjmh verify}. Arguments are regular JMH command line options and take
+ * precedence over the defaults here, e.g. {@code -Djmh.args="PriceStream -f 2 -wi 5"}. The result
+ * file comes from the {@code jmh.result} system property.
+ */
+public class BlotterBenchmarks {
+
+    private static final String ALL_BENCHMARKS = "com\\.trading\\.blotter\\..*Benchmark";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(ALL_BENCHMARKS);
+        }
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(System.getProperty("jmh.result", "target/jmh-result.json"));
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.trading.blotter.dto;
+
+import com.trading.blotter.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.ServerSentEventHttpMessageWriter;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PriceUpdate#withGreeks} and the "price-update" SSE event the stream endpoint writes for it,
+ * through the same message writer and Jackson encoder WebFlux uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceUpdateEncodingBenchmark {
+
+    private static final ResolvableType EVENT_TYPE =
+            ResolvableType.forClassWithGenerics(ServerSentEvent.class, Object.class);
+
+    private final BigDecimal pnl = new BigDecimal("-48211.37");
+    private final BigDecimal mtm = new BigDecimal("-50621.94");
+    private final BigDecimal delta = new BigDecimal("512.5");
+    private final BigDecimal gamma = new BigDecimal("-3.25");
+
+    private ServerSentEventHttpMessageWriter writer;
+
+    @Setup
+    public void setUp() {
+        writer = new ServerSentEventHttpMessageWriter(new Jackson2JsonEncoder(BenchmarkFixtures.objectMapper()));
+    }
+
+    @Benchmark
+    public PriceUpdate withGreeks() {
+        return PriceUpdate.withGreeks("TRD000042", pnl, mtm, delta, gamma);
+    }
+
+    @Benchmark
+    public Integer withGreeksAsSse() {
+        PriceUpdate update = PriceUpdate.withGreeks("TRD000042", pnl, mtm, delta, gamma);
+        ServerSentEvent<Object> event = ServerSentEvent.<Object>builder()
+                .id(String.valueOf(update.getTimestamp()))
+                .event("price-update")
+                .data(update)
+                .build();
+
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        writer.write(Mono.just(event), EVENT_TYPE, MediaType.TEXT_EVENT_STREAM, response, Map.of()).block();
+        return response.getBody()
+                .map(DataBuffer::readableByteCount)
+                .reduce(0, Integer::sum)
+                .block();
+    }
+}
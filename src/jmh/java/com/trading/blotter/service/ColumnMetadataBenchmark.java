@@ -0,0 +1,72 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.BenchmarkFixtures;
+import com.trading.blotter.model.ColumnMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Column catalog lookups, cycling through every column and category.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnMetadataBenchmark {
+
+    private ColumnMetadataService columnMetadataService;
+    private String[] fieldNames;
+    private String[] categories;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        columnMetadataService = new ColumnMetadataService(BenchmarkFixtures.objectMapper());
+        List<ColumnMetadata> columns = columnMetadataService.getAllColumns();
+        fieldNames = columns.stream().map(ColumnMetadata::getFieldName).toArray(String[]::new);
+        categories = columns.stream().map(ColumnMetadata::getCategory).distinct().toArray(String[]::new);
+    }
+
+    @Benchmark
+    public ColumnMetadata getColumn() {
+        return columnMetadataService.getColumn(fieldNames[nextIndex(fieldNames.length)]);
+    }
+
+    @Benchmark
+    public int getOrdinal() {
+        return columnMetadataService.getOrdinal(fieldNames[nextIndex(fieldNames.length)]);
+    }
+
+    @Benchmark
+    public List<ColumnMetadata> getColumnsByCategory() {
+        return columnMetadataService.getColumnsByCategory(categories[nextIndex(categories.length)]);
+    }
+
+    @Benchmark
+    public List<ColumnMetadata> getDefaultColumns() {
+        return columnMetadataService.getDefaultGTIDColumns();
+    }
+
+    @Benchmark
+    public ColumnMetadataService.EncodedView getAllColumnsView() {
+        return columnMetadataService.getAllColumnsView();
+    }
+
+    private int nextIndex(int length) {
+        next = next + 1 >= length ? 0 : next + 1;
+        return next;
+    }
+}
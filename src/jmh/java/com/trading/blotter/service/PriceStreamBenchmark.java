@@ -0,0 +1,88 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.BenchmarkFixtures;
+import com.trading.blotter.config.PriceStreamProperties;
+import com.trading.blotter.dto.PriceUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The tick engine with one client subscribed to 10, 1k or 100k trades. The engine's own timers are
+ * pushed out of the way and the benchmark thread plays the engine thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceStreamBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int subscribedTrades;
+
+    private PriceStreamService priceStreamService;
+    private Disposable subscription;
+    private int[] ordinals;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        PriceStreamProperties properties = new PriceStreamProperties();
+        properties.setTickInterval(Duration.ofHours(1));
+        properties.setConflationWindow(Duration.ofHours(1));
+        // One re-priced trade per tick, so both benchmarks measure a single update
+        properties.setTicksPerInterval(1);
+
+        PriceStateStore priceStore = new PriceStateStore();
+        priceStreamService = new PriceStreamService(properties, priceStore, List.of(), new SimpleMeterRegistry());
+
+        Set<String> tradeIds = IntStream.range(0, subscribedTrades)
+                .mapToObj(BenchmarkFixtures::tradeId)
+                .collect(Collectors.toSet());
+        subscription = priceStreamService.getPriceStream(tradeIds).subscribe(update -> {
+        });
+        ordinals = tradeIds.stream().mapToInt(priceStore::ordinal).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.dispose();
+        priceStreamService.stopPriceGenerator();
+    }
+
+    @Benchmark
+    public PriceUpdate generatePriceUpdate() {
+        int ordinal = ordinals[next];
+        next = next + 1 == ordinals.length ? 0 : next + 1;
+        return priceStreamService.generatePriceUpdate(ordinal);
+    }
+
+    /**
+     * A tick routed to the subscriber, then flushed to it as a conflation window would.
+     */
+    @Benchmark
+    public void tickAndFlush() {
+        priceStreamService.tick();
+        priceStreamService.flush();
+    }
+}
@@ -0,0 +1,77 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.BenchmarkFixtures;
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.TradeSearchRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TradeService#buildQuery} for the filter sets the blotter sends most.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradeQueryBenchmark {
+
+    @Param({"book", "bookAndDateRange", "allFilters", "projectedNextPage"})
+    public String filterSet;
+
+    private TradeService tradeService;
+    private TradeSearchRequest request;
+
+    @Setup
+    public void setUp() {
+        SearchProperties searchProperties = new SearchProperties();
+        FetchPlanService fetchPlanService = new FetchPlanService(
+                new ColumnMetadataService(BenchmarkFixtures.objectMapper()), searchProperties);
+        // Building a query only touches the search settings and the fetch plans
+        tradeService = new TradeService(null, null, searchProperties, null, fetchPlanService, null);
+        request = request(filterSet);
+    }
+
+    @Benchmark
+    public NativeQuery buildQuery() {
+        return tradeService.buildQuery(request);
+    }
+
+    private static TradeSearchRequest request(String filterSet) {
+        TradeSearchRequest.TradeSearchRequestBuilder request = TradeSearchRequest.builder().book("BOOK-3");
+        switch (filterSet) {
+            case "book" -> {
+            }
+            case "bookAndDateRange" -> request
+                    .tradeDateFrom(LocalDate.of(2024, 1, 1))
+                    .tradeDateTo(LocalDate.of(2024, 3, 31));
+            case "allFilters" -> request
+                    .tradeDateFrom(LocalDate.of(2024, 1, 1))
+                    .tradeDateTo(LocalDate.of(2024, 3, 31))
+                    .instrument("INSTR-7")
+                    .trader("TRADER-4")
+                    .counterparty("CPTY-2")
+                    .status("ACTIVE")
+                    .includeTotal(true);
+            case "projectedNextPage" -> request
+                    .requestedFields(BenchmarkFixtures.BLOTTER_COLUMNS)
+                    .searchAfter(new Object[]{1704067200000L, "TRD000100"});
+            default -> throw new IllegalArgumentException("Unknown filter set: " + filterSet);
+        }
+        return request.build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.trading.blotter.actuator;
+
+import com.trading.blotter.dto.PriceStreamStats;
+import com.trading.blotter.service.PriceStreamService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes per-stream conflation statistics at /actuator/pricestreams.
+ */
+@Component
+@Endpoint(id = "pricestreams")
+@RequiredArgsConstructor
+public class PriceStreamsEndpoint {
+
+    private final PriceStreamService priceStreamService;
+
+    @ReadOperation
+    public List<PriceStreamStats> streams() {
+        return priceStreamService.getStreamStats();
+    }
+}
@@ -0,0 +1,151 @@
+package com.trading.blotter.codec;
+
+import com.trading.blotter.dto.PriceUpdate;
+import com.trading.blotter.model.PriceField;
+import com.trading.blotter.service.ColumnMetadataService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link PriceUpdate} deltas, served on the price stream for
+ * {@code Accept: application/vnd.blotter.price-delta}. The SSE/JSON stream stays the default.
+ *
+ * <pre>
+ * stream := header frame*
+ * header := 'P' 'D' version:u8 scale:u8
+ * frame  := tradeIdLength:varint tradeId:utf8 timestamp:varint mask:varint value*
+ * value  := zigzag varint of the fixed-point value (scale decimals)
+ * </pre>
+ * Bit i of the mask is column ordinal i of {@code GET /api/trades/columns}; one value follows per
+ * set bit, in ascending bit order. Varints are unsigned LEB128.
+ * A reference decoder for the UI lives in {@code trade-scripts/price-delta-decoder.js}.
+ */
+@Component
+public class PriceDeltaCodec {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.blotter.price-delta";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    static final byte VERSION = 1;
+    private static final byte[] HEADER = {'P', 'D', VERSION, PriceField.SCALE};
+
+    // Price fields in ascending column ordinal order, with their mask bit
+    private final PriceField[] wireOrder;
+    private final long[] maskBits;
+
+    public PriceDeltaCodec(ColumnMetadataService columnMetadataService) {
+        this.wireOrder = Arrays.stream(PriceField.values())
+                .sorted(Comparator.comparingInt(field -> columnMetadataService.getOrdinal(field.getFieldName())))
+                .toArray(PriceField[]::new);
+        this.maskBits = new long[PriceField.count()];
+        for (PriceField field : wireOrder) {
+            int ordinal = columnMetadataService.getOrdinal(field.getFieldName());
+            if (ordinal < 0 || ordinal >= Long.SIZE) {
+                throw new IllegalStateException("Column " + field.getFieldName()
+                        + " has no ordinal below 64, cannot be encoded in a price delta mask");
+            }
+            maskBits[field.ordinal()] = 1L << ordinal;
+        }
+    }
+
+    public DataBuffer header(DataBufferFactory bufferFactory) {
+        return bufferFactory.wrap(HEADER.clone());
+    }
+
+    public DataBuffer encode(PriceUpdate update, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(64);
+        write(update, buffer);
+        return buffer;
+    }
+
+    public DataBuffer encode(List<PriceUpdate> updates, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(updates.size() * 40 + 16);
+        for (PriceUpdate update : updates) {
+            write(update, buffer);
+        }
+        return buffer;
+    }
+
+    private void write(PriceUpdate update, DataBuffer buffer) {
+        byte[] tradeId = update.getTradeId().getBytes(StandardCharsets.UTF_8);
+        writeVarint(buffer, tradeId.length);
+        buffer.write(tradeId);
+        writeVarint(buffer, update.getTimestamp());
+
+        long mask = 0;
+        for (PriceField field : wireOrder) {
+            if (update.has(field)) {
+                mask |= maskBits[field.ordinal()];
+            }
+        }
+        writeVarint(buffer, mask);
+        for (PriceField field : wireOrder) {
+            if (update.has(field)) {
+                writeVarint(buffer, zigzag(update.value(field)));
+            }
+        }
+    }
+
+    /**
+     * Reference decoder for one frame, positioned after the stream header.
+     */
+    public PriceUpdate decode(ByteBuffer frame) {
+        byte[] tradeId = new byte[(int) readVarint(frame)];
+        frame.get(tradeId);
+        PriceUpdate update = new PriceUpdate();
+        update.setTradeId(new String(tradeId, StandardCharsets.UTF_8));
+        update.setTimestamp(readVarint(frame));
+
+        long mask = readVarint(frame);
+        int changedMask = 0;
+        long[] values = new long[PriceField.count()];
+        for (PriceField field : wireOrder) {
+            if ((mask & maskBits[field.ordinal()]) != 0) {
+                changedMask |= field.getBit();
+                values[field.ordinal()] = unzigzag(readVarint(frame));
+            }
+        }
+        update.setChangedMask(changedMask);
+        update.setPnl(values[PriceField.PNL.ordinal()]);
+        update.setMtm(values[PriceField.MTM.ordinal()]);
+        update.setDelta(values[PriceField.DELTA.ordinal()]);
+        update.setGamma(values[PriceField.GAMMA.ordinal()]);
+        return update;
+    }
+
+    private static void writeVarint(DataBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.write((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.write((byte) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -1,6 +1,14 @@
 package com.trading.blotter.config;
 
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.trading.blotter.service.SearchMetrics;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchConfiguration;
@@ -13,6 +21,9 @@ public class ElasticsearchConfig extends ReactiveElasticsearchConfiguration {
     @Value("${spring.elasticsearch.uris}")
     private String elasticsearchUrl;
 
+    @Autowired
+    private SearchMetrics searchMetrics;
+
     @Override
     public ClientConfiguration clientConfiguration() {
         return ClientConfiguration.builder()
@@ -21,4 +32,15 @@ public class ElasticsearchConfig extends ReactiveElasticsearchConfiguration {
                 .withSocketTimeout(Duration.ofSeconds(60))
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Spring's transport with the search phase timings: same client options (headers, content
+     * type), {@link SearchMetrics} as the instrumentation.
+     */
+    @Bean
+    @Override
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient, JsonpMapper jsonpMapper) {
+        ElasticsearchTransport transport = super.elasticsearchTransport(restClient, jsonpMapper);
+        return new RestClientTransport(restClient, jsonpMapper, (RestClientOptions) transport.options(), searchMetrics);
+    }
+}
@@ -0,0 +1,58 @@
+package com.trading.blotter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "blotter.index")
+public class IndexProperties {
+
+    // Install/upgrade the index template at startup and create the index if missing
+    private boolean manageTemplate = true;
+
+    private String templateName = "trades-template";
+
+    // How the ~380 non-filterable additional fields are mapped
+    private AdditionalFieldsMapping additionalFields = AdditionalFieldsMapping.SOURCE_ONLY;
+
+    // Time partitions behind the alias, by tradeDate; NONE keeps a single index
+    private Partitioning partitioning = Partitioning.MONTH;
+
+    // Above this many partitions a date-range query targets the whole alias instead
+    private int maxPartitionsPerQuery = 36;
+
+    // Seal finished partitions: write block and force-merge to one segment. Off by default, since a
+    // sealed partition rejects every later write, including status changes of its trades
+    private boolean sealPartitions = false;
+
+    // Grace period after a partition's period ends for late bookings before it is sealed
+    private Duration sealAfter = Duration.ofDays(7);
+
+    // Optional data tier for sealed partitions, e.g. data_warm
+    private String sealedTierPreference;
+
+    private Duration maintenanceInterval = Duration.ofHours(1);
+
+    // Index trades with routing = book so book-scoped searches hit one shard; needs a migrate-index run
+    private boolean routeByBook = false;
+
+    // Primary shards of new trades indices, null keeps the Elasticsearch default
+    private Integer numberOfShards;
+
+    public enum Partitioning {
+        NONE,
+        MONTH,
+        YEAR
+    }
+
+    public enum AdditionalFieldsMapping {
+        // Kept in _source only: no inverted index, no doc_values, no per-field mapping
+        SOURCE_ONLY,
+        // One flattened field: every value searchable as a keyword, a single mapping entry
+        FLATTENED
+    }
+}
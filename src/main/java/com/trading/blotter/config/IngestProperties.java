@@ -0,0 +1,29 @@
+package com.trading.blotter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "blotter.ingest")
+public class IngestProperties {
+
+    // A _bulk request is sent once either limit is reached
+    private long batchSizeBytes = 10L * 1024 * 1024;
+
+    private int batchSizeDocs = 5000;
+
+    // Bulk requests in flight at once
+    private int maxInFlight = 4;
+
+    // Retries of a rejected (429) request or of the rejected documents of a batch
+    private int maxRetries = 5;
+
+    private Duration retryBackoff = Duration.ofMillis(500);
+
+    // Disable refresh and replicas while loading, restore them afterwards
+    private boolean tuneIndexForLoad = true;
+}
@@ -0,0 +1,50 @@
+package com.trading.blotter.config;
+
+import com.trading.blotter.codec.PriceDeltaCodec;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Makes Server-Sent Events the default for /prices/stream. The binary delta stream is only
+ * picked when the client asks for it by name, with Accept: application/vnd.blotter.price-delta
+ * or format=binary; a wildcard, browser or missing Accept gets text/event-stream.
+ */
+@Component
+public class PriceStreamAcceptFilter implements WebFilter {
+
+    private static final String PRICE_STREAM_PATH = "/api/trades/prices/stream";
+    private static final String BINARY_FORMAT = "binary";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!PRICE_STREAM_PATH.equals(exchange.getRequest().getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        boolean binary = BINARY_FORMAT.equals(exchange.getRequest().getQueryParams().getFirst("format"))
+                || acceptsBinaryByName(exchange.getRequest().getHeaders().getAccept());
+        MediaType accept = binary ? PriceDeltaCodec.MEDIA_TYPE : MediaType.TEXT_EVENT_STREAM;
+        return chain.filter(exchange.mutate()
+                .request(request -> request.headers(headers -> headers.setAccept(List.of(accept))))
+                .build());
+    }
+
+    /** True when the binary type is named and preferred over a named text/event-stream. */
+    private static boolean acceptsBinaryByName(List<MediaType> accept) {
+        double binary = quality(accept, PriceDeltaCodec.MEDIA_TYPE);
+        return binary > 0 && binary >= quality(accept, MediaType.TEXT_EVENT_STREAM);
+    }
+
+    private static double quality(List<MediaType> accept, MediaType named) {
+        return accept.stream()
+                .filter(type -> type.equalsTypeAndSubtype(named))
+                .mapToDouble(MediaType::getQualityValue)
+                .max()
+                .orElse(0);
+    }
+}
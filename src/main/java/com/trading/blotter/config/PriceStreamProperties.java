@@ -0,0 +1,78 @@
+package com.trading.blotter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "blotter.prices")
+public class PriceStreamProperties {
+
+    // How often the shared tick engine wakes up
+    private Duration tickInterval = Duration.ofMillis(500);
+
+    // Upper bound of trades re-priced per engine tick
+    private int ticksPerInterval = 100;
+
+    // Ticks for the same trade within one window are conflated (latest wins) before being sent
+    private Duration conflationWindow = Duration.ofMillis(100);
+
+    // Bounded per-subscriber queue between the engine and the HTTP writer
+    private int subscriberBufferSize = 1024;
+
+    // Class of streams opened without a clientClass parameter
+    private String defaultClientClass = "default";
+
+    // Queue size and overflow policy per client class, by the clientClass stream parameter
+    private Map<String, ClientClass> clientClasses = new LinkedHashMap<>();
+
+    // Reconnect delay suggested to clients disconnected for falling behind
+    private Duration resyncRetry = Duration.ofSeconds(2);
+
+    // Latest engine updates kept for reconnecting streams; older gaps get a price snapshot instead
+    private int replayCapacity = 65536;
+
+    private Views views = new Views();
+
+    private Viewports viewports = new Viewports();
+
+    @Data
+    public static class ClientClass {
+        // Falls back to subscriberBufferSize
+        private Integer bufferSize;
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CONFLATE;
+    }
+
+    @Data
+    public static class Views {
+        // Streams following a search view re-resolve its trades this often, and after every ingest
+        private Duration refreshInterval = Duration.ofSeconds(30);
+
+        // Trades a view stream follows at most, the first ones in the view's sort order
+        private int maxTrades = 10000;
+    }
+
+    @Data
+    public static class Viewports {
+        // Off-screen trades of a stream with a viewport are sent, conflated, this often
+        private Duration offscreenRefresh = Duration.ofSeconds(2);
+    }
+
+    /**
+     * What a subscriber's queue does when its HTTP writer falls behind.
+     */
+    public enum OverflowPolicy {
+        // Updates wait in the conflation buffer, latest per trade, until the queue has room
+        CONFLATE,
+        // The oldest queued update makes room for the newest
+        DROP_OLDEST,
+        // The stream ends with a resync event; the client reloads its snapshot and reconnects
+        DISCONNECT
+    }
+}
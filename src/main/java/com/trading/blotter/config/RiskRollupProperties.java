@@ -0,0 +1,22 @@
+package com.trading.blotter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "blotter.risk")
+public class RiskRollupProperties {
+
+    // Seed rollups from Elasticsearch at startup and keep them live from the tick stream
+    private boolean enabled = true;
+
+    // Changed groups are published at most once per interval (conflation)
+    private Duration publishInterval = Duration.ofSeconds(1);
+
+    // How often group membership is checked against Elasticsearch
+    private Duration reconcileInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,81 @@
+package com.trading.blotter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "blotter.search")
+public class SearchProperties {
+
+    // Totals above this are reported as a lower bound ("gte"); exactTotal requests count everything
+    private int trackTotalHitsUpTo = 10000;
+
+    private Cache cache = new Cache();
+
+    private Paging paging = new Paging();
+
+    private Facets facets = new Facets();
+
+    private Projection projection = new Projection();
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+
+        private int maxEntries = 500;
+
+        // Approximate retained size across all cached pages
+        private long maxWeightBytes = 64L * 1024 * 1024;
+
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Paging {
+        // How long an idle point-in-time session stays open between pages
+        private Duration keepAlive = Duration.ofMinutes(2);
+
+        // Fetch the next page while the client renders the current one
+        private boolean prefetch = true;
+
+        // Prefetched pages held at once, and their approximate retained size at full page size
+        private int maxPrefetchedPages = 32;
+
+        private long maxPrefetchedWeightBytes = 16L * 1024 * 1024;
+
+        // How often prefetched pages nobody asked for within the keep-alive are dropped
+        private Duration prefetchEvictionInterval = Duration.ofSeconds(30);
+
+        // Page size used when walking a whole result set (exports, seeding)
+        private int scanPageSize = 1000;
+    }
+
+    @Data
+    public static class Facets {
+        private boolean enabled = true;
+
+        // Term counts are served from memory and recomputed in the background at this rate
+        private Duration refreshInterval = Duration.ofMinutes(1);
+
+        // While there are no counts yet (e.g. Elasticsearch was down), a request refreshes them at
+        // most this often; the others get the empty result
+        private Duration minRefreshInterval = Duration.ofSeconds(10);
+
+        // Most frequent values kept per column
+        private int maxTerms = 500;
+    }
+
+    @Data
+    public static class Projection {
+        // When every requested column has doc values, read them from doc values and skip _source.
+        // Numbers then come back as the indexed doubles rather than the _source text.
+        private boolean docValueFields = true;
+
+        // Compiled fetch plans kept per distinct requestedFields list
+        private int planCacheSize = 512;
+    }
+}
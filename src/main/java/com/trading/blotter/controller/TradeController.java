@@ -1,25 +1,62 @@
 package com.trading.blotter.controller;
 
+import com.trading.blotter.codec.PriceDeltaCodec;
+import com.trading.blotter.dto.ColumnCatalogChanges;
+import com.trading.blotter.dto.FacetValue;
+import com.trading.blotter.dto.IngestReport;
+import com.trading.blotter.dto.PriceBatch;
+import com.trading.blotter.dto.PriceStreamStats;
+import com.trading.blotter.dto.PriceSubscriptionChange;
 import com.trading.blotter.dto.PriceUpdate;
+import com.trading.blotter.dto.PriceViewport;
+import com.trading.blotter.dto.RiskRollup;
+import com.trading.blotter.dto.TradeAggregationRequest;
+import com.trading.blotter.dto.TradeAggregationResponse;
 import com.trading.blotter.dto.TradeSearchRequest;
 import com.trading.blotter.dto.TradeSearchResponse;
 import com.trading.blotter.model.ColumnMetadata;
+import com.trading.blotter.service.BulkIngestService;
 import com.trading.blotter.service.ColumnMetadataService;
+import com.trading.blotter.service.FacetService;
 import com.trading.blotter.service.PriceStreamService;
+import com.trading.blotter.service.PriceViewService;
+import com.trading.blotter.service.RawTradeSearchService;
+import com.trading.blotter.service.RiskRollupService;
+import com.trading.blotter.service.SlowConsumerException;
+import com.trading.blotter.service.TradeAggregationService;
+import com.trading.blotter.service.TradeExportService;
+import com.trading.blotter.service.TradePagingService;
+import com.trading.blotter.service.TradeSearchCache;
 import com.trading.blotter.service.TradeService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/trades")
@@ -28,30 +65,151 @@ import java.util.Set;
 public class TradeController {
 
     private final TradeService tradeService;
+    private final TradePagingService tradePagingService;
     private final ColumnMetadataService columnMetadataService;
     private final PriceStreamService priceStreamService;
+    private final PriceViewService priceViewService;
+    private final PriceDeltaCodec priceDeltaCodec;
+    private final TradeSearchCache tradeSearchCache;
+    private final TradeExportService tradeExportService;
+    private final TradeAggregationService tradeAggregationService;
+    private final RiskRollupService riskRollupService;
+    private final FacetService facetService;
+    private final BulkIngestService bulkIngestService;
+    private final RawTradeSearchService rawTradeSearchService;
 
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(30);
+    private static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(100);
+    private static final int DEFAULT_MAX_BATCH = 500;
+    private static final int MAX_BATCH_SIZE = 5000;
+    private static final Duration MIN_BATCH_WINDOW = Duration.ofMillis(10);
+    private static final Duration MAX_BATCH_WINDOW = Duration.ofSeconds(5);
+    private static final String GZIP = "gzip";
+    private static final String PRICE_STREAM_ID_HEADER = "X-Price-Stream-Id";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    /**
+     * Trades with their live prices, and the price sequence those are consistent with
+     * (priceSequence), to open the price stream from.
+     */
     @PostMapping("/search")
     public Mono<TradeSearchResponse> searchTrades(@Valid @RequestBody TradeSearchRequest request) {
         log.info("Received search request for book: {}, fields: {}",
                 request.getBook(),
                 request.getRequestedFields() != null ? request.getRequestedFields().size() : "all");
-        return tradeService.searchTrades(request);
+        Mono<TradeSearchResponse> page = request.getCursor() != null || request.isPointInTime()
+                ? tradePagingService.page(request)
+                : tradeService.searchTrades(request);
+        return page.map(priceStreamService::withLivePrices);
+    }
+
+    /**
+     * Same request and response as /search, but the hits are copied from the Elasticsearch
+     * response instead of being mapped to trades and serialized again. Not cached; point-in-time
+     * paging is not supported.
+     */
+    @PostMapping("/search/raw")
+    public Mono<Void> searchTradesRaw(@Valid @RequestBody TradeSearchRequest request, ServerHttpResponse response) {
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(rawTradeSearchService.search(request, response.bufferFactory()));
+    }
+
+    /**
+     * Sums, counts and min/max of notional, P&L, MTM and Greeks per group (book, trader,
+     * counterparty, instrument, status, maturityBucket...), computed by Elasticsearch.
+     * Without groupBy a single grand-total group is returned.
+     */
+    @PostMapping("/aggregate")
+    public Mono<TradeAggregationResponse> aggregateTrades(@Valid @RequestBody TradeAggregationRequest request) {
+        return tradeAggregationService.aggregate(request);
+    }
+
+    /**
+     * Streams every trade matching the filters as NDJSON (default) or CSV in the requested columns,
+     * walking the result set with a point-in-time under the hood. Paging fields are ignored.
+     */
+    @PostMapping("/export")
+    public Mono<Void> exportTrades(@RequestBody TradeSearchRequest request,
+                                   @RequestParam(defaultValue = "ndjson") String format,
+                                   ServerHttpResponse response) {
+        TradeExportService.Format exportFormat = parseFormat(format);
+        response.getHeaders().setContentType(exportFormat.getMediaType());
+        response.getHeaders().setContentDisposition(ContentDisposition.attachment()
+                .filename("trades." + exportFormat.getExtension())
+                .build());
+        return response.writeWith(tradeExportService.export(request, exportFormat, response.bufferFactory()));
+    }
+
+    /**
+     * Bulk loads trades posted as NDJSON, one document in index format per line (as produced by
+     * trade-scripts/trade-data-ingest.py), and reports the achieved throughput.
+     */
+    @PostMapping(value = "/ingest", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/x-ndjson"})
+    public Mono<IngestReport> ingestTrades(@RequestBody Flux<String> lines) {
+        return bulkIngestService.ingestNdjson(lines);
+    }
+
+    /**
+     * Drops cached search pages, for writers that bypass this service (e.g. trade-scripts ingest).
+     */
+    @DeleteMapping("/search/cache")
+    public Mono<Void> invalidateSearchCache() {
+        return Mono.fromRunnable(tradeSearchCache::invalidateAll);
+    }
+
+    /**
+     * Value counts of every filterable keyword column, served from a background-refreshed cache.
+     */
+    @GetMapping("/facets")
+    public Mono<Map<String, List<FacetValue>>> getFacets() {
+        return facetService.getFacets();
+    }
+
+    @GetMapping("/facets/{field}")
+    public Mono<List<FacetValue>> getFacet(@PathVariable String field) {
+        return facetService.getFacet(field);
     }
 
+    /**
+     * Column views are served from pre-encoded (and pre-gzipped) JSON with a strong ETag;
+     * a matching If-None-Match gets 304 Not Modified.
+     */
     @GetMapping("/columns")
-    public Mono<List<ColumnMetadata>> getAllColumns() {
-        return Mono.just(columnMetadataService.getAllColumns());
+    public Mono<ResponseEntity<byte[]>> getAllColumns(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return Mono.just(encodedJson(columnMetadataService.getAllColumnsView(), acceptEncoding));
     }
 
     @GetMapping("/columns/default")
-    public Mono<List<ColumnMetadata>> getDefaultColumns() {
-        return Mono.just(columnMetadataService.getDefaultGTIDColumns());
+    public Mono<ResponseEntity<byte[]>> getDefaultColumns(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return Mono.just(encodedJson(columnMetadataService.getDefaultColumnsView(), acceptEncoding));
     }
 
     @GetMapping("/columns/category/{category}")
-    public Mono<List<ColumnMetadata>> getColumnsByCategory(@PathVariable String category) {
-        return Mono.just(columnMetadataService.getColumnsByCategory(category));
+    public Mono<ResponseEntity<byte[]>> getColumnsByCategory(
+            @PathVariable String category,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return Mono.just(encodedJson(columnMetadataService.getCategoryView(category), acceptEncoding));
+    }
+
+    /**
+     * Columns added or changed since the catalog version the client holds, or the whole catalog
+     * (full = true) when that version is unknown.
+     */
+    @GetMapping("/columns/changes")
+    public Mono<ColumnCatalogChanges> getColumnChanges(@RequestParam(required = false) String since) {
+        return Mono.just(columnMetadataService.getChanges(since));
+    }
+
+    /**
+     * Admin: replaces the column catalog with {@code columns}, which may only append columns or
+     * change attributes of existing ones (400 otherwise). Returns the changes against the previous
+     * version, the same delta clients then fetch from /columns/changes. Not persisted.
+     */
+    @PutMapping("/columns")
+    public Mono<ColumnCatalogChanges> updateColumns(@RequestBody List<ColumnMetadata> columns) {
+        return Mono.fromCallable(() -> columnMetadataService.update(columns));
     }
 
     /**
@@ -61,23 +219,312 @@ public class TradeController {
      * - Automatic reconnection
      * - HTTP/2 multiplexing
      * - Simpler backpressure handling
+     *
+     * Passing batch (10ms to 5s, e.g. 100ms) and/or maxBatch (e.g. 500) switches to batched mode:
+     * one "price-batch" event per window carrying an array of updates and a sequence id.
+     * Without them every update is sent as its own "price-update" event.
+     *
+     * clientClass picks the queue size and overflow policy (blotter.prices.client-classes).
+     * A stream closed for falling behind ends with a "resync" event carrying a reconnect delay.
+     *
+     * The first event, "subscribed", carries the stream id (also in the X-Price-Stream-Id
+     * header) that PATCH /prices/streams/{streamId} edits the trades of.
+     *
+     * Every update carries its price sequence. fromSequence, the priceSequence of the search the
+     * grid was loaded from, first sends every change after it. Event ids are resume points: a
+     * reconnect with Last-Event-ID only gets what it missed, or the current prices of its trades
+     * when that is too far back, or was handed out before a restart. Both are "epoch:sequence".
      */
     @GetMapping(value = "/prices/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<PriceUpdate>> streamPrices(
-            @RequestParam(required = false) String tradeIds) {  // ADD THIS
+    public Flux<ServerSentEvent<Object>> streamPrices(
+            @RequestParam(required = false) String tradeIds,
+            @RequestParam(required = false) String batch,
+            @RequestParam(required = false) Integer maxBatch,
+            @RequestParam(required = false) String clientClass,
+            @RequestParam(required = false) String fromSequence,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
+            ServerHttpResponse response) {
 
-        Set<String> subscribedTrades = tradeIds != null
-                ? Set.of(tradeIds.split(","))
-                : Collections.emptySet();
+        Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching = batching(batch, maxBatch);
+        Set<String> trades = parseTradeIds(tradeIds);
+        // Routing by tradeId happens in the shared tick engine, no per-client filtering needed
+        return priceEvents(priceStreamService.openStream(trades, trades.isEmpty(), clientClass,
+                resumeAfter(lastEventId, fromSequence)), batching, response);
+    }
+
+    /**
+     * Same stream for the trades of a search view: the filters of the request, or the search of
+     * its cursor when it has one. Trades entering or leaving the view are picked up without
+     * reconnecting. Meant for fetch-based SSE clients, since EventSource can only GET. When the
+     * view's trades can't be resolved the stream ends with a "stream-error" event.
+     */
+    @PostMapping(value = "/prices/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamViewPrices(
+            @RequestBody TradeSearchRequest view,
+            @RequestParam(required = false) String batch,
+            @RequestParam(required = false) Integer maxBatch,
+            @RequestParam(required = false) String clientClass,
+            @RequestParam(required = false) String fromSequence,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
+            ServerHttpResponse response) {
+
+        Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching = batching(batch, maxBatch);
+        return priceEvents(priceViewService.openViewStream(view, clientClass,
+                resumeAfter(lastEventId, fromSequence)), batching, response);
+    }
+
+    /**
+     * Same stream in the compact binary delta format, only when asked for by name with
+     * Accept: application/vnd.blotter.price-delta or format=binary; anything else gets SSE (see
+     * {@link com.trading.blotter.config.PriceStreamAcceptFilter}). See {@link PriceDeltaCodec}
+     * for the layout.
+     * Each frame (or each batch of frames) is flushed as soon as it is encoded. A stream closed
+     * for falling behind just ends; the client resyncs when it reconnects. The stream id is in
+     * the X-Price-Stream-Id header. Frames carry no sequence, so fromSequence is the only way to
+     * resume; it takes the search's priceSequence.
+     */
+    @GetMapping(value = "/prices/stream", produces = PriceDeltaCodec.MEDIA_TYPE_VALUE)
+    public Mono<Void> streamPricesBinary(
+            @RequestParam(required = false) String tradeIds,
+            @RequestParam(required = false) String batch,
+            @RequestParam(required = false) Integer maxBatch,
+            @RequestParam(required = false) String clientClass,
+            @RequestParam(required = false) String fromSequence,
+            ServerHttpResponse response) {
+
+        Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching = batching(batch, maxBatch);
+        Set<String> trades = parseTradeIds(tradeIds);
+        return priceFrames(priceStreamService.openStream(trades, trades.isEmpty(), clientClass, fromSequence),
+                batching, response);
+    }
+
+    @PostMapping(value = "/prices/stream", produces = PriceDeltaCodec.MEDIA_TYPE_VALUE)
+    public Mono<Void> streamViewPricesBinary(
+            @RequestBody TradeSearchRequest view,
+            @RequestParam(required = false) String batch,
+            @RequestParam(required = false) Integer maxBatch,
+            @RequestParam(required = false) String clientClass,
+            @RequestParam(required = false) String fromSequence,
+            ServerHttpResponse response) {
 
-        return priceStreamService.getPriceStream(subscribedTrades)
-                .filter(update -> subscribedTrades.isEmpty() ||
-                        subscribedTrades.contains(update.getTradeId()))  // ADD THIS
-                .map(update -> ServerSentEvent.<PriceUpdate>builder()
-                        .id(String.valueOf(update.getTimestamp()))
-                        .event("price-update")
-                        .data(update)
+        Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching = batching(batch, maxBatch);
+        return priceFrames(priceViewService.openViewStream(view, clientClass, fromSequence), batching, response);
+    }
+
+    /**
+     * Adds and removes trades of an open price stream without reconnecting.
+     */
+    @PatchMapping("/prices/streams/{streamId}")
+    public Mono<PriceStreamStats> updatePriceSubscription(@PathVariable String streamId,
+                                                          @RequestBody PriceSubscriptionChange change) {
+        return Mono.fromSupplier(() -> priceStreamService.updateSubscription(streamId,
+                Objects.requireNonNullElse(change.getAdd(), List.of()),
+                Objects.requireNonNullElse(change.getRemove(), List.of())));
+    }
+
+    /**
+     * Sends only the trades on screen at full rate; the rest are refreshed at a low rate, or caught
+     * up when they scroll back in. Streams following a view may give visible rows instead of
+     * tradeIds.
+     */
+    @PutMapping("/prices/streams/{streamId}/viewport")
+    public Mono<PriceStreamStats> setPriceViewport(@PathVariable String streamId,
+                                                   @RequestBody PriceViewport viewport) {
+        return Mono.fromSupplier(() -> priceViewService.setViewport(streamId, viewport));
+    }
+
+    /**
+     * Sends every trade of the stream at full rate again.
+     */
+    @DeleteMapping("/prices/streams/{streamId}/viewport")
+    public Mono<PriceStreamStats> clearPriceViewport(@PathVariable String streamId) {
+        return Mono.fromSupplier(() -> priceViewService.clearViewport(streamId));
+    }
+
+    private Flux<ServerSentEvent<Object>> priceEvents(PriceStreamService.PriceStream stream,
+                                                      Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching,
+                                                      ServerHttpResponse response) {
+        response.getHeaders().set(PRICE_STREAM_ID_HEADER, stream.id());
+
+        Flux<ServerSentEvent<Object>> events;
+        if (batching != null) {
+            AtomicLong sequence = new AtomicLong();
+            events = batching.apply(stream.updates())
+                    .map(chunk -> {
+                        long seq = sequence.incrementAndGet();
+                        long resumeSequence = chunk.stream().mapToLong(PriceUpdate::getResumeSequence).max().orElse(0);
+                        return ServerSentEvent.<Object>builder()
+                                .id(resumeSequence > 0 ? priceStreamService.resumePoint(resumeSequence) : null)
+                                .event("price-batch")
+                                .data(new PriceBatch(seq, chunk))
+                                .build();
+                    });
+        } else {
+            // Events without an id leave the client's Last-Event-ID as it was
+            events = stream.updates().map(update -> ServerSentEvent.<Object>builder()
+                    .id(update.getResumeSequence() > 0
+                            ? priceStreamService.resumePoint(update.getResumeSequence()) : null)
+                    .event("price-update")
+                    .data(update)
+                    .build());
+        }
+
+        return events
+                .startWith(ServerSentEvent.<Object>builder()
+                        .event("subscribed")
+                        .data(Map.of("streamId", stream.id()))
+                        .build())
+                .onErrorResume(SlowConsumerException.class, e -> Flux.just(ServerSentEvent.<Object>builder()
+                        .event("resync")
+                        .retry(Duration.ofMillis(e.getResync().getRetryAfterMillis()))
+                        .data(e.getResync())
+                        .build()))
+                .onErrorResume(ResponseStatusException.class, e -> Flux.just(ServerSentEvent.<Object>builder()
+                        .event("stream-error")
+                        .data(Map.of("status", e.getStatusCode().value(), "message", String.valueOf(e.getReason())))
+                        .build()))
+                .timeout(STREAM_TIMEOUT, Flux.empty());
+    }
+
+    private Mono<Void> priceFrames(PriceStreamService.PriceStream stream,
+                                   Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching,
+                                   ServerHttpResponse response) {
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        Flux<PriceUpdate> updates = stream.updates()
+                .onErrorResume(SlowConsumerException.class, e -> Flux.empty());
+
+        Flux<DataBuffer> frames = batching != null
+                ? batching.apply(updates).map(chunk -> priceDeltaCodec.encode(chunk, bufferFactory))
+                : updates.map(update -> priceDeltaCodec.encode(update, bufferFactory));
+
+        response.getHeaders().setContentType(PriceDeltaCodec.MEDIA_TYPE);
+        response.getHeaders().set(PRICE_STREAM_ID_HEADER, stream.id());
+        return response.writeAndFlushWith(
+                Flux.concat(Mono.fromSupplier(() -> priceDeltaCodec.header(bufferFactory)),
+                                frames.timeout(STREAM_TIMEOUT, Flux.empty()))
+                        .map(Mono::just));
+    }
+
+    /**
+     * Live P&L/MTM/Delta/Gamma totals per book, trader and counterparty.
+     */
+    @GetMapping("/risk")
+    public Mono<List<RiskRollup>> getRiskRollups(@RequestParam(required = false) String dimension) {
+        return Mono.fromSupplier(() -> riskRollupService.snapshot(dimension));
+    }
+
+    /**
+     * SSE stream of live risk totals: one "risk-rollup" event with every group on connect,
+     * then at most one event per publish interval carrying only the groups that changed.
+     */
+    @GetMapping(value = "/risk/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<List<RiskRollup>>> streamRiskRollups() {
+        return riskRollupService.getRollupStream()
+                .map(rollups -> ServerSentEvent.<List<RiskRollup>>builder()
+                        .event("risk-rollup")
+                        .data(rollups)
                         .build())
-                .timeout(Duration.ofMinutes(30), Flux.empty());
+                .timeout(STREAM_TIMEOUT, Flux.empty());
+    }
+
+    /**
+     * Where a price stream resumes from: the Last-Event-ID of a reconnect, else fromSequence.
+     */
+    private static String resumeAfter(String lastEventId, String fromSequence) {
+        return lastEventId != null && !lastEventId.isBlank() ? lastEventId : fromSequence;
+    }
+
+    /**
+     * Comma-separated ids, trimmed, blanks and duplicates dropped.
+     */
+    private static Set<String> parseTradeIds(String tradeIds) {
+        return tradeIds != null
+                ? Arrays.stream(tradeIds.split(","))
+                        .map(String::trim)
+                        .filter(tradeId -> !tradeId.isEmpty())
+                        .collect(Collectors.toUnmodifiableSet())
+                : Collections.emptySet();
+    }
+
+    /**
+     * Batching of a price stream, null when unbatched. Parsed before the stream is opened.
+     */
+    private static Function<Flux<PriceUpdate>, Flux<List<PriceUpdate>>> batching(String batch, Integer maxBatch) {
+        if (batch == null && maxBatch == null) {
+            return null;
+        }
+        Duration window = batch != null ? parseWindow(batch) : DEFAULT_BATCH_WINDOW;
+        int maxSize = maxBatch != null ? Math.max(1, Math.min(maxBatch, MAX_BATCH_SIZE)) : DEFAULT_MAX_BATCH;
+        // Fair backpressure: a slow client holds batches back instead of failing the buffer with an overflow
+        return updates -> updates.bufferTimeout(maxSize, window, true);
+    }
+
+    private static TradeExportService.Format parseFormat(String format) {
+        try {
+            return TradeExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+    }
+
+    private static Duration parseWindow(String batch) {
+        Duration window;
+        try {
+            window = DurationStyle.detectAndParse(batch);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid batch window: " + batch);
+        }
+        if (window.compareTo(MIN_BATCH_WINDOW) < 0 || window.compareTo(MAX_BATCH_WINDOW) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch window must be between 10ms and 5s: " + batch);
+        }
+        return window;
+    }
+
+    private static ResponseEntity<byte[]> encodedJson(ColumnMetadataService.EncodedView view, String acceptEncoding) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (view.gzip() != null && acceptsGzip(acceptEncoding)) {
+            // A strong ETag identifies exact bytes, the gzip representation needs its own
+            return response.eTag(view.etag() + "-" + GZIP)
+                    .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+                    .body(view.gzip());
+        }
+        return response.eTag(view.etag()).body(view.json());
+    }
+
+    /**
+     * True when Accept-Encoding gives gzip, or failing that the wildcard, a non-zero q-value.
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (GZIP.equalsIgnoreCase(name)) {
+                gzip = quality;
+            } else if ("*".equals(name)) {
+                wildcard = quality;
+            }
+        }
+        double accepted = gzip != null ? gzip : wildcard != null ? wildcard : 0;
+        return accepted > 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package com.trading.blotter.dto;
+
+import com.trading.blotter.model.ColumnMetadata;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * What changed in the column catalog since the version a client holds. Existing columns keep
+ * their ordinals, so a delta only appends columns or replaces changed ones. When the client's
+ * version is unknown (e.g. from before a restart) full is set and columns holds the whole catalog.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnCatalogChanges {
+    private String fromVersion;
+    private String version;
+    private boolean full;
+
+    // Whole catalog, only when full
+    private List<ColumnMetadata> columns;
+
+    // Appended after the client's last column, in ordinal order
+    private List<ColumnMetadata> added;
+
+    // Existing columns whose attributes changed, by field name
+    private List<ColumnMetadata> changed;
+}
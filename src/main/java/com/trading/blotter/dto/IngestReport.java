@@ -0,0 +1,21 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestReport {
+    private long indexed;
+    private long failed;
+    private long bytes;
+    private int bulkRequests;
+    private int retries;
+    private long elapsedMillis;
+    private double docsPerSecond;
+    private double mbPerSecond;
+}
@@ -0,0 +1,20 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceBatch {
+
+    // Monotonic per stream; the SSE event id is the resume point of the batch's updates instead
+    private long sequence;
+
+    private List<PriceUpdate> updates;
+}
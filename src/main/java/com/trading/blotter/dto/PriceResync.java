@@ -0,0 +1,26 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last event of a price stream closed for falling behind: updates were lost, so the client
+ * should reload the trades it shows before reconnecting.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceResync {
+    private String subscriberId;
+    private String clientClass;
+    private String reason;
+
+    // Age of the oldest update the client had not read yet
+    private long lagMillis;
+
+    // Suggested delay before reconnecting
+    private long retryAfterMillis;
+}
@@ -0,0 +1,41 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceStreamStats {
+    private String subscriberId;
+    private Instant connectedAt;
+    private int subscribedTrades;
+
+    // Trades sent at full rate: the reported viewport, or every subscribed trade without one
+    private int visibleTrades;
+    private String clientClass;
+    private String overflowPolicy;
+
+    // Ticks routed to this stream vs updates actually handed to the HTTP writer
+    private long offered;
+    private long emitted;
+    private int pending;
+    private int queued;
+
+    // Off-screen trades with updates held back until their refresh or scroll-in
+    private int offscreen;
+
+    // Updates discarded under the DROP_OLDEST policy
+    private long dropped;
+
+    // Age of the oldest update waiting in the queue, 0 when the client keeps up
+    private long lagMillis;
+
+    // offered / emitted, 1.0 means no conflation happened
+    private double conflationRatio;
+}
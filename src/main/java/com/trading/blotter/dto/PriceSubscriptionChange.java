@@ -0,0 +1,25 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trades to add to and remove from an open price stream.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceSubscriptionChange {
+
+    @Builder.Default
+    private List<String> add = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> remove = new ArrayList<>();
+}
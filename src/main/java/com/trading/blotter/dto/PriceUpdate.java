@@ -1,13 +1,16 @@
 package com.trading.blotter.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.trading.blotter.model.PriceField;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Data
@@ -19,35 +22,102 @@ public class PriceUpdate {
 
     private String tradeId;
 
-    // Only send fields that changed (delta update)
-    private Map<String, Object> updatedFields;
+    // Bitmask of PriceField values carried by this update
+    @JsonIgnore
+    private int changedMask;
+
+    // Fixed-point values (PriceField.SCALE decimals), only meaningful where changedMask is set
+    @JsonIgnore
+    private long pnl;
+
+    @JsonIgnore
+    private long mtm;
+
+    @JsonIgnore
+    private long delta;
+
+    @JsonIgnore
+    private long gamma;
 
     private long timestamp;
 
-    public static PriceUpdate create(String tradeId, BigDecimal newPnl, BigDecimal newMtm) {
-        Map<String, Object> fields = new HashMap<>();
-        fields.put("pnl", newPnl);
-        fields.put("mtm", newMtm);
+    // Position in the tick engine's output, increasing across all trades; 0 outside the engine
+    private long sequence;
+
+    // Set on the last update of a complete flush: every update of the stream up to this sequence has
+    // been queued before it, so a reconnect can resume from there. 0 on other updates
+    @JsonIgnore
+    private long resumeSequence;
 
+    public static PriceUpdate of(String tradeId, long pnl, long mtm, long delta, long gamma) {
+        return new PriceUpdate(tradeId, PriceField.ALL_MASK, pnl, mtm, delta, gamma, System.currentTimeMillis(), 0, 0);
+    }
+
+    public static PriceUpdate create(String tradeId, BigDecimal newPnl, BigDecimal newMtm) {
         return PriceUpdate.builder()
                 .tradeId(tradeId)
-                .updatedFields(fields)
+                .changedMask(PriceField.PNL.getBit() | PriceField.MTM.getBit())
+                .pnl(toFixed(newPnl))
+                .mtm(toFixed(newMtm))
                 .timestamp(System.currentTimeMillis())
                 .build();
     }
 
     public static PriceUpdate withGreeks(String tradeId, BigDecimal pnl, BigDecimal mtm,
                                          BigDecimal delta, BigDecimal gamma) {
-        Map<String, Object> fields = new HashMap<>();
-        fields.put("pnl", pnl);
-        fields.put("mtm", mtm);
-        fields.put("delta", delta);
-        fields.put("gamma", gamma);
+        return of(tradeId, toFixed(pnl), toFixed(mtm), toFixed(delta), toFixed(gamma));
+    }
 
-        return PriceUpdate.builder()
-                .tradeId(tradeId)
-                .updatedFields(fields)
-                .timestamp(System.currentTimeMillis())
-                .build();
+    /**
+     * Conflates two updates of the same trade: the result carries the union of changed fields,
+     * taking the newer value wherever both updates touched a field.
+     */
+    public static PriceUpdate merge(PriceUpdate older, PriceUpdate newer) {
+        return new PriceUpdate(
+                newer.tradeId,
+                older.changedMask | newer.changedMask,
+                newer.has(PriceField.PNL) ? newer.pnl : older.pnl,
+                newer.has(PriceField.MTM) ? newer.mtm : older.mtm,
+                newer.has(PriceField.DELTA) ? newer.delta : older.delta,
+                newer.has(PriceField.GAMMA) ? newer.gamma : older.gamma,
+                newer.timestamp,
+                newer.sequence,
+                0);
+    }
+
+    /**
+     * Copy of this update marking a resume point of one stream; updates are shared between streams.
+     */
+    public PriceUpdate withResumeSequence(long resumeSequence) {
+        return new PriceUpdate(tradeId, changedMask, pnl, mtm, delta, gamma, timestamp, sequence, resumeSequence);
+    }
+
+    public boolean has(PriceField field) {
+        return (changedMask & field.getBit()) != 0;
+    }
+
+    public long value(PriceField field) {
+        return switch (field) {
+            case PNL -> pnl;
+            case MTM -> mtm;
+            case DELTA -> delta;
+            case GAMMA -> gamma;
+        };
+    }
+
+    // Only send fields that changed (delta update). BigDecimals are only created here, at the serialization edge.
+    @JsonProperty("updatedFields")
+    public Map<String, Object> getUpdatedFields() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (PriceField field : PriceField.values()) {
+            if (has(field)) {
+                fields.put(field.getFieldName(), PriceField.toDecimal(value(field)));
+            }
+        }
+        return fields;
+    }
+
+    private static long toFixed(BigDecimal value) {
+        return PriceField.toFixed(value);
     }
-}
\ No newline at end of file
+}
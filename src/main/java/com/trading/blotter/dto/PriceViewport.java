@@ -0,0 +1,34 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * What the grid shows of an open price stream: the visible tradeIds, or for streams following a
+ * search view the visible rows (0-based, inclusive) in the view's sort order. margin rows above
+ * and below count as visible so a short scroll doesn't wait for a refresh.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceViewport {
+
+    private List<String> tradeIds;
+
+    private Integer fromRow;
+
+    private Integer toRow;
+
+    // Rows around the visible ones also sent at full rate, view streams only
+    @Builder.Default
+    private int margin = 0;
+
+    // Off-screen trades are refreshed at a low rate; false sends them only when they scroll back in
+    @Builder.Default
+    private boolean offscreenRefresh = true;
+}
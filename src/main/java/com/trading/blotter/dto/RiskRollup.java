@@ -0,0 +1,24 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RiskRollup {
+    // book, trader or counterparty
+    private String dimension;
+    private String key;
+    private int tradeCount;
+    private BigDecimal pnl;
+    private BigDecimal mtm;
+    private BigDecimal delta;
+    private BigDecimal gamma;
+    private long timestamp;
+}
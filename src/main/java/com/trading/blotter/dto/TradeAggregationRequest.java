@@ -0,0 +1,37 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeAggregationRequest {
+
+    // Same filter model as /search; paging, projection and sort fields are ignored
+    private TradeSearchRequest filter;
+
+    // book, trader, counterparty, instrument, status, currency, tradeType, maturityBucket
+    private List<String> groupBy;
+
+    // year, quarter or month
+    @Builder.Default
+    private String maturityInterval = "year";
+
+    // Groups per page
+    @Min(1)
+    @Max(1000)
+    @Builder.Default
+    private int size = 100;
+
+    // TradeAggregationResponse.afterKey of the previous page
+    private Map<String, Object> after;
+}
@@ -0,0 +1,44 @@
+package com.trading.blotter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeAggregationResponse {
+    private List<Group> groups;
+
+    // Pass back as TradeAggregationRequest.after for the next page; null on the last page
+    private Map<String, Object> afterKey;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Group {
+        // Group-by dimension -> value; empty for grand totals
+        private Map<String, Object> keys;
+        private long count;
+
+        // Metric field (notional, pnl, ...) -> stats
+        private Map<String, Stats> metrics;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stats {
+        private long count;
+        private Double sum;
+        private Double min;
+        private Double max;
+    }
+}
@@ -12,7 +12,7 @@ import java.time.LocalDate;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TradeSearchRequest {
@@ -41,6 +41,17 @@ public class TradeSearchRequest {
 
     private Object[] searchAfter;
 
+    // Count the matching trades: up to blotter.search.track-total-hits-up-to, or all of them with exactTotal
+    private boolean includeTotal;
+
+    private boolean exactTotal;
+
+    // Opens a point-in-time paging session; the response then carries a nextCursor
+    private boolean pointInTime;
+
+    // Opaque token from TradeSearchResponse.nextCursor; filters, sort and page size come from the cursor
+    private String cursor;
+
     // CRITICAL: Field projection to avoid loading all 400 fields
     private List<String> requestedFields;
 
@@ -9,12 +9,23 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TradeSearchResponse {
     private List<TradeDocument> trades;
+    // Matching trades when includeTotal was requested, otherwise the size of this page
     private long totalCount;
+
+    // "eq" for an exact total, "gte" when counting stopped at the threshold; null without includeTotal
+    private String totalRelation;
     private Object[] lastSearchAfter;
     private boolean hasMore;
+
+    // Set for point-in-time paging sessions while more pages remain
+    private String nextCursor;
+
+    // Resume point ("epoch:sequence") the P&L, MTM and Greeks of these trades are consistent with;
+    // open the price stream with fromSequence set to it to get every change since
+    private String priceSequence;
 }
@@ -0,0 +1,82 @@
+package com.trading.blotter.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The column catalog compiled once into immutable lookups: by name, by ordinal (position in the
+ * catalog), by category and the default set. The version is a checksum of the content.
+ */
+public final class ColumnCatalog {
+
+    private final String version;
+    private final List<ColumnMetadata> columns;
+    private final Map<String, Integer> ordinals;
+    private final Map<String, List<ColumnMetadata>> byCategory;
+    private final List<ColumnMetadata> defaults;
+
+    public ColumnCatalog(String version, List<ColumnMetadata> columns) {
+        this.version = version;
+        this.columns = List.copyOf(columns);
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        Map<String, List<ColumnMetadata>> byCategory = new LinkedHashMap<>();
+        List<ColumnMetadata> defaults = new ArrayList<>();
+        for (int i = 0; i < this.columns.size(); i++) {
+            ColumnMetadata column = this.columns.get(i);
+            ordinals.put(column.getFieldName(), i);
+            byCategory.computeIfAbsent(column.getCategory(), category -> new ArrayList<>()).add(column);
+            if (column.isDefaultVisible()) {
+                defaults.add(column);
+            }
+        }
+        this.ordinals = Map.copyOf(ordinals);
+        Map<String, List<ColumnMetadata>> categories = new LinkedHashMap<>();
+        byCategory.forEach((category, members) -> categories.put(category, List.copyOf(members)));
+        this.byCategory = Collections.unmodifiableMap(categories);
+        this.defaults = List.copyOf(defaults);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    public List<ColumnMetadata> getDefaults() {
+        return defaults;
+    }
+
+    /**
+     * Columns of the category in catalog order, empty for an unknown category.
+     */
+    public List<ColumnMetadata> getCategory(String category) {
+        return byCategory.getOrDefault(category, List.of());
+    }
+
+    public Map<String, List<ColumnMetadata>> getCategories() {
+        return byCategory;
+    }
+
+    public ColumnMetadata getColumn(String fieldName) {
+        Integer ordinal = ordinals.get(fieldName);
+        return ordinal != null ? columns.get(ordinal) : null;
+    }
+
+    public ColumnMetadata getColumn(int ordinal) {
+        return ordinal >= 0 && ordinal < columns.size() ? columns.get(ordinal) : null;
+    }
+
+    /**
+     * Position of the column in the catalog, -1 for unknown fields.
+     */
+    public int getOrdinal(String fieldName) {
+        return ordinals.getOrDefault(fieldName, -1);
+    }
+}
@@ -1,22 +1,23 @@
 package com.trading.blotter.model;
 
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
 
-@Data
+/**
+ * One column of the catalog. Immutable, instances are shared by every view of the catalog.
+ */
+@Value
 @Builder
-@NoArgsConstructor
-@AllArgsConstructor
+@Jacksonized
 public class ColumnMetadata {
-    private String fieldName;
-    private String displayName;
-    private String dataType;
-    private boolean filterable;
-    private boolean sortable;
-    private int width;
-    private String category;
-    private String description;
-    private boolean defaultVisible;
-}
\ No newline at end of file
+    String fieldName;
+    String displayName;
+    String dataType;
+    boolean filterable;
+    boolean sortable;
+    int width;
+    String category;
+    String description;
+    boolean defaultVisible;
+}
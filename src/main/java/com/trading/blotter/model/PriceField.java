@@ -0,0 +1,52 @@
+package com.trading.blotter.model;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Live-priced fields carried by price updates.
+ * Values are held as fixed-point longs with {@link #SCALE} decimal places.
+ */
+@Getter
+public enum PriceField {
+    PNL("pnl"),
+    MTM("mtm"),
+    DELTA("delta"),
+    GAMMA("gamma");
+
+    public static final int SCALE = 2;
+    private static final double FIXED_FACTOR = 100d;
+    public static final int ALL_MASK = (1 << values().length) - 1;
+
+    private static final PriceField[] VALUES = values();
+
+    private final String fieldName;
+    private final int bit;
+
+    PriceField(String fieldName) {
+        this.fieldName = fieldName;
+        this.bit = 1 << ordinal();
+    }
+
+    public static PriceField of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    public static long toFixed(double value) {
+        return Math.round(value * FIXED_FACTOR);
+    }
+
+    public static long toFixed(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+}
@@ -15,10 +15,11 @@ import java.time.LocalDate;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
-@Document(indexName = "trades")
+// Mapping comes from the index template, see IndexTemplateService
+@Document(indexName = "trades", createIndex = false)
 public class TradeDocument {
 
     @Id
@@ -85,8 +86,8 @@ public class TradeDocument {
     @Field(type = FieldType.Double)
     private BigDecimal theta;
 
-    // Dynamic additional fields (remaining ~380 fields)
-    @Field(type = FieldType.Object, enabled = true)
+    // Additional fields (remaining ~380 fields), kept in _source only unless filterable
+    @Field(type = FieldType.Object, enabled = false)
     private Map<String, Object> additionalFields;
 
     // Transient field for search_after pagination
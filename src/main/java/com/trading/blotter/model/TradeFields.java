@@ -0,0 +1,49 @@
+package com.trading.blotter.model;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Column-name based access to {@link TradeDocument} values. Core columns map to their typed
+ * properties, every other column name is looked up in {@code additionalFields}.
+ */
+public final class TradeFields {
+
+    private static final Map<String, Function<TradeDocument, Object>> CORE = Map.ofEntries(
+            Map.entry("tradeId", TradeDocument::getTradeId),
+            Map.entry("book", TradeDocument::getBook),
+            Map.entry("tradeDate", TradeDocument::getTradeDate),
+            Map.entry("instrument", TradeDocument::getInstrument),
+            Map.entry("trader", TradeDocument::getTrader),
+            Map.entry("counterparty", TradeDocument::getCounterparty),
+            Map.entry("notional", TradeDocument::getNotional),
+            Map.entry("pnl", TradeDocument::getPnl),
+            Map.entry("mtm", TradeDocument::getMtm),
+            Map.entry("currency", TradeDocument::getCurrency),
+            Map.entry("tradeType", TradeDocument::getTradeType),
+            Map.entry("status", TradeDocument::getStatus),
+            Map.entry("settlementDate", TradeDocument::getSettlementDate),
+            Map.entry("maturityDate", TradeDocument::getMaturityDate),
+            Map.entry("fixedRate", TradeDocument::getFixedRate),
+            Map.entry("floatingRate", TradeDocument::getFloatingRate),
+            Map.entry("delta", TradeDocument::getDelta),
+            Map.entry("gamma", TradeDocument::getGamma),
+            Map.entry("vega", TradeDocument::getVega),
+            Map.entry("theta", TradeDocument::getTheta)
+    );
+
+    private TradeFields() {
+    }
+
+    public static boolean isCore(String fieldName) {
+        return CORE.containsKey(fieldName);
+    }
+
+    public static Object get(TradeDocument trade, String fieldName) {
+        Function<TradeDocument, Object> accessor = CORE.get(fieldName);
+        if (accessor != null) {
+            return accessor.apply(trade);
+        }
+        return trade.getAdditionalFields() != null ? trade.getAdditionalFields().get(fieldName) : null;
+    }
+}
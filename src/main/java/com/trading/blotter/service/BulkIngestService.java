@@ -0,0 +1,391 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trading.blotter.config.IngestProperties;
+import com.trading.blotter.dto.IngestReport;
+import com.trading.blotter.model.TradeDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.ResponseException;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads trades through the Elasticsearch {@code _bulk} API.
+ * <p>
+ * Documents are serialized once, grouped into requests bounded by both bytes and document count,
+ * and sent with a bounded number of requests in flight. Requests or individual documents rejected
+ * with 429 (indexing pressure) are retried with exponential backoff. Each document goes to the time
+ * partition of its tradeDate, routed by book when the layout asks for it. While loading, refresh
+ * and replicas are switched off on the index and restored afterwards.
+ */
+@Service
+@Slf4j
+public class BulkIngestService {
+
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+    private static final String REFRESH_INTERVAL = "index.refresh_interval";
+    private static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ElasticsearchRestOperations restOperations;
+    private final ReactiveElasticsearchOperations elasticsearchTemplate;
+    private final ObjectMapper objectMapper;
+    private final IngestProperties properties;
+    private final TradeSearchCache searchCache;
+    private final FacetService facetService;
+    private final PriceViewService priceViewService;
+    private final TradeIndexResolver indexResolver;
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    private record BulkDoc(String id, String index, String routing, byte[] source) {
+    }
+
+    private static final class Progress {
+        private final long startedNanos = System.nanoTime();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+
+        private IngestReport report() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startedNanos);
+            double seconds = elapsedNanos / 1e9;
+            return IngestReport.builder()
+                    .indexed(indexed.get())
+                    .failed(failed.get())
+                    .bytes(bytes.get())
+                    .bulkRequests(requests.get())
+                    .retries(retries.get())
+                    .elapsedMillis(elapsedNanos / 1_000_000)
+                    .docsPerSecond(indexed.get() / seconds)
+                    .mbPerSecond(bytes.get() / (1024d * 1024d) / seconds)
+                    .build();
+        }
+    }
+
+    public BulkIngestService(ElasticsearchRestOperations restOperations, ReactiveElasticsearchOperations elasticsearchTemplate,
+                             ObjectMapper objectMapper, IngestProperties properties,
+                             TradeSearchCache searchCache, FacetService facetService,
+                             PriceViewService priceViewService, TradeIndexResolver indexResolver) {
+        this.restOperations = restOperations;
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.searchCache = searchCache;
+        this.facetService = facetService;
+        this.priceViewService = priceViewService;
+        this.indexResolver = indexResolver;
+    }
+
+    /**
+     * Indexes trades, serializing them in parallel with the same converter as the repository.
+     */
+    public Mono<IngestReport> ingestTrades(Flux<TradeDocument> trades) {
+        return ingest(trades
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .map(this::toBulkDoc)
+                .sequential());
+    }
+
+    /**
+     * Indexes NDJSON lines, one trade document in index format per line, keyed by its tradeId.
+     */
+    public Mono<IngestReport> ingestNdjson(Flux<String> lines) {
+        return ingest(lines
+                .filter(line -> !line.isBlank())
+                .map(this::toBulkDoc));
+    }
+
+    private Mono<IngestReport> ingest(Flux<BulkDoc> docs) {
+        return Mono.defer(() -> {
+            if (!loading.compareAndSet(false, true)) {
+                return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "An ingest is already running"));
+            }
+            return load(docs, new Progress())
+                    .doFinally(signal -> loading.set(false));
+        });
+    }
+
+    private Mono<IngestReport> load(Flux<BulkDoc> docs, Progress progress) {
+        return Mono.usingWhen(
+                        tuneForLoad(),
+                        saved -> batches(docs)
+                                .flatMap(batch -> send(batch, 0, progress), properties.getMaxInFlight())
+                                .then(Mono.fromSupplier(progress::report)),
+                        this::restore,
+                        (saved, error) -> restore(saved),
+                        this::restore)
+                .doOnNext(report -> {
+                    log.info("Ingested {} trades ({} failed) in {} ms: {} docs/s, {} MB/s, {} bulk requests, {} retries",
+                            report.getIndexed(), report.getFailed(), report.getElapsedMillis(),
+                            Math.round(report.getDocsPerSecond()), String.format("%.1f", report.getMbPerSecond()),
+                            report.getBulkRequests(), report.getRetries());
+                    searchCache.invalidateAll();
+                    facetService.refresh().subscribe();
+                    priceViewService.refreshAll().subscribe();
+                })
+                .doOnError(error -> log.error("Ingest failed after {} trades", progress.indexed.get(), error));
+    }
+
+    private Flux<List<BulkDoc>> batches(Flux<BulkDoc> docs) {
+        return Flux.defer(() -> {
+            long[] batchBytes = {0};
+            int[] batchDocs = {0};
+            return docs.bufferUntil(doc -> {
+                batchBytes[0] += doc.source().length;
+                if (++batchDocs[0] >= properties.getBatchSizeDocs() || batchBytes[0] >= properties.getBatchSizeBytes()) {
+                    batchBytes[0] = 0;
+                    batchDocs[0] = 0;
+                    return true;
+                }
+                return false;
+            });
+        });
+    }
+
+    private Mono<Void> send(List<BulkDoc> batch, int attempt, Progress progress) {
+        return indexResolver.ensurePartitions(batch.stream().map(BulkDoc::index).distinct().toList())
+                .then(Mono.defer(() -> sendBulk(batch, attempt, progress)));
+    }
+
+    private Mono<Void> sendBulk(List<BulkDoc> batch, int attempt, Progress progress) {
+        byte[] body = bulkBody(batch);
+        Request request = new Request("POST", "/_bulk");
+        request.setEntity(new NByteArrayEntity(body, NDJSON));
+        progress.requests.incrementAndGet();
+
+        return restOperations.perform(request)
+                .flatMap(response -> {
+                    progress.bytes.addAndGet(body.length);
+                    List<BulkDoc> rejected = handleResponse(response, batch, progress);
+                    return rejected.isEmpty() ? Mono.<Void>empty() : retry(rejected, attempt, progress);
+                })
+                .onErrorResume(error -> isTooManyRequests(error) && attempt < properties.getMaxRetries(),
+                        error -> retry(batch, attempt, progress));
+    }
+
+    private Mono<Void> retry(List<BulkDoc> docs, int attempt, Progress progress) {
+        if (attempt >= properties.getMaxRetries()) {
+            log.warn("Giving up on {} rejected trades after {} retries", docs.size(), attempt);
+            progress.failed.addAndGet(docs.size());
+            return Mono.empty();
+        }
+        progress.retries.incrementAndGet();
+        Duration backoff = properties.getRetryBackoff().multipliedBy(1L << attempt);
+        return Mono.delay(backoff)
+                .then(Mono.defer(() -> send(docs, attempt + 1, progress)));
+    }
+
+    /**
+     * Counts the outcome of every item and returns the documents rejected with 429, to be retried.
+     */
+    private List<BulkDoc> handleResponse(JsonNode response, List<BulkDoc> batch, Progress progress) {
+        if (!response.path("errors").asBoolean()) {
+            progress.indexed.addAndGet(batch.size());
+            return List.of();
+        }
+
+        List<BulkDoc> rejected = new ArrayList<>();
+        JsonNode items = response.path("items");
+        String firstError = null;
+        for (int i = 0; i < items.size() && i < batch.size(); i++) {
+            JsonNode item = items.get(i).path("index");
+            int status = item.path("status").asInt();
+            if (status == TOO_MANY_REQUESTS) {
+                rejected.add(batch.get(i));
+            } else if (status >= 300) {
+                progress.failed.incrementAndGet();
+                if (firstError == null) {
+                    firstError = item.path("error").path("reason").asText();
+                }
+            } else {
+                progress.indexed.incrementAndGet();
+            }
+        }
+        if (firstError != null) {
+            log.warn("Bulk request had failed documents, first error: {}", firstError);
+        }
+        return rejected;
+    }
+
+    private Mono<Map<String, Map<String, JsonNode>>> tuneForLoad() {
+        if (!properties.isTuneIndexForLoad()) {
+            return Mono.just(Map.of());
+        }
+        String index = indexName();
+        Request get = new Request("GET", "/" + index + "/_settings/" + REFRESH_INTERVAL + "," + NUMBER_OF_REPLICAS);
+        get.addParameter("flat_settings", "true");
+
+        return restOperations.perform(get)
+                .map(this::settingsByIndex)
+                .flatMap(saved -> {
+                    ObjectNode load = objectMapper.createObjectNode()
+                            .put(REFRESH_INTERVAL, "-1")
+                            .put(NUMBER_OF_REPLICAS, 0);
+                    return restOperations.perform(putSettings(index, load))
+                            .doOnNext(response -> log.info("Disabled refresh and replicas on {} for bulk load", index))
+                            .thenReturn(saved);
+                });
+    }
+
+    private Mono<Void> restore(Map<String, Map<String, JsonNode>> saved) {
+        if (!properties.isTuneIndexForLoad()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(saved.entrySet())
+                .concatMap(entry -> {
+                    // A missing setting was the default, null resets it
+                    ObjectNode restored = objectMapper.createObjectNode();
+                    restored.set(REFRESH_INTERVAL, entry.getValue().get(REFRESH_INTERVAL));
+                    restored.set(NUMBER_OF_REPLICAS, entry.getValue().get(NUMBER_OF_REPLICAS));
+                    return restOperations.perform(putSettings(entry.getKey(), restored));
+                })
+                .then(restOperations.perform(new Request("POST", "/" + indexName() + "/_refresh")))
+                .doOnSuccess(response -> log.info("Restored index settings after bulk load"))
+                .onErrorResume(error -> {
+                    log.error("Failed to restore index settings after bulk load", error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Map<String, Map<String, JsonNode>> settingsByIndex(JsonNode response) {
+        Map<String, Map<String, JsonNode>> settings = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> indices = response.fields();
+        while (indices.hasNext()) {
+            Map.Entry<String, JsonNode> index = indices.next();
+            Map<String, JsonNode> values = new LinkedHashMap<>();
+            index.getValue().path("settings").fields()
+                    .forEachRemaining(setting -> values.put(setting.getKey(), setting.getValue()));
+            settings.put(index.getKey(), values);
+        }
+        return settings;
+    }
+
+    private Request putSettings(String index, ObjectNode settings) {
+        return ElasticsearchRestOperations.json("PUT", "/" + index + "/_settings", settings);
+    }
+
+    private byte[] bulkBody(List<BulkDoc> batch) {
+        int size = 0;
+        for (BulkDoc doc : batch) {
+            size += doc.source().length + doc.id().length() + doc.index().length() + 48;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(size);
+        try {
+            for (BulkDoc doc : batch) {
+                body.write(("{\"index\":{\"_index\":\"" + doc.index() + "\",\"_id\":").getBytes(StandardCharsets.UTF_8));
+                body.write(objectMapper.writeValueAsBytes(doc.id()));
+                if (doc.routing() != null) {
+                    body.write(",\"routing\":".getBytes(StandardCharsets.UTF_8));
+                    body.write(objectMapper.writeValueAsBytes(doc.routing()));
+                }
+                body.write("}}\n".getBytes(StandardCharsets.UTF_8));
+                body.write(doc.source());
+                body.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toByteArray();
+    }
+
+    private BulkDoc toBulkDoc(TradeDocument trade) {
+        String json = elasticsearchTemplate.getElasticsearchConverter().mapObject(trade).toJson();
+        return new BulkDoc(trade.getTradeId(), indexResolver.writeIndex(trade.getTradeDate()),
+                routing(trade.getTradeId(), trade.getBook()), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the top-level tradeId, tradeDate and book without building the (400 field) document tree.
+     */
+    private BulkDoc toBulkDoc(String line) {
+        String tradeId = null;
+        String tradeDate = null;
+        String book = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Each NDJSON line must be a trade object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME && (tradeId == null || tradeDate == null || book == null)) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("tradeId".equals(field)) {
+                    tradeId = parser.getValueAsString();
+                } else if ("tradeDate".equals(field)) {
+                    tradeDate = parser.getValueAsString();
+                } else if ("book".equals(field)) {
+                    book = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid NDJSON line: " + e.getMessage());
+        }
+        if (tradeId == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "NDJSON trade without tradeId");
+        }
+        return new BulkDoc(tradeId, indexResolver.writeIndex(parseTradeDate(tradeId, tradeDate)),
+                routing(tradeId, book), line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String routing(String tradeId, String book) {
+        if (!indexResolver.isRoutedByBook()) {
+            return null;
+        }
+        if (book == null || book.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trade " + tradeId + " has no book to route by");
+        }
+        return book;
+    }
+
+    private static LocalDate parseTradeDate(String tradeId, String tradeDate) {
+        try {
+            return tradeDate != null ? LocalDate.parse(tradeDate) : null;
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid tradeDate '" + tradeDate + "' on trade " + tradeId);
+        }
+    }
+
+    private String indexName() {
+        return elasticsearchTemplate.getIndexCoordinatesFor(TradeDocument.class).getIndexName();
+    }
+
+    private static boolean isTooManyRequests(Throwable error) {
+        return error instanceof ResponseException responseException
+                && responseException.getResponse().getStatusLine().getStatusCode() == TOO_MANY_REQUESTS;
+    }
+}
@@ -1,31 +1,215 @@
 package com.trading.blotter.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trading.blotter.dto.ColumnCatalogChanges;
+import com.trading.blotter.model.ColumnCatalog;
 import com.trading.blotter.model.ColumnMetadata;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * The column catalog, compiled once into a {@link ColumnCatalog} and pre-encoded JSON views (all
+ * columns, the default set, each category), so serving the column chooser costs no copying or
+ * serialization. Each view carries a strong ETag derived from the catalog version.
+ */
 @Service
 public class ColumnMetadataService {
 
-    private static final List<ColumnMetadata> ALL_COLUMNS = initializeColumns();
+    // Catalog versions kept to answer change requests with a delta
+    private static final int HISTORY_SIZE = 16;
+    // Below this the gzip framing costs more than it saves
+    private static final int MIN_GZIP_BYTES = 1024;
 
+    /**
+     * A view encoded once: JSON bytes, their gzip (null for small views) and the ETag of the JSON.
+     */
+    public record EncodedView(byte[] json, byte[] gzip, String etag) {
+    }
+
+    private record Compiled(ColumnCatalog catalog, EncodedView all, EncodedView defaults,
+                            Map<String, EncodedView> categories, EncodedView emptyCategory) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, ColumnCatalog> history = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ColumnCatalog> eldest) {
+            return size() > HISTORY_SIZE;
+        }
+    };
+
+    private volatile Compiled compiled;
+
+    public ColumnMetadataService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        publish(initializeColumns());
+    }
+
+    public ColumnCatalog getCatalog() {
+        return compiled.catalog();
+    }
+
+    /**
+     * All columns in ordinal order. The list and its columns are immutable.
+     */
     public List<ColumnMetadata> getAllColumns() {
-        return new ArrayList<>(ALL_COLUMNS);
+        return compiled.catalog().getColumns();
     }
 
     public List<ColumnMetadata> getDefaultGTIDColumns() {
-        return ALL_COLUMNS.stream()
-                .filter(ColumnMetadata::isDefaultVisible)
-                .collect(Collectors.toList());
+        return compiled.catalog().getDefaults();
     }
 
     public List<ColumnMetadata> getColumnsByCategory(String category) {
-        return ALL_COLUMNS.stream()
-                .filter(col -> category.equals(col.getCategory()))
-                .collect(Collectors.toList());
+        return compiled.catalog().getCategory(category);
+    }
+
+    public ColumnMetadata getColumn(String fieldName) {
+        return compiled.catalog().getColumn(fieldName);
+    }
+
+    /**
+     * Position of the column in the catalog, stable for a given catalog. Used as the field id of compact
+     * wire formats. Returns -1 for unknown fields.
+     */
+    public int getOrdinal(String fieldName) {
+        return compiled.catalog().getOrdinal(fieldName);
+    }
+
+    public EncodedView getAllColumnsView() {
+        return compiled.all();
+    }
+
+    public EncodedView getDefaultColumnsView() {
+        return compiled.defaults();
+    }
+
+    public EncodedView getCategoryView(String category) {
+        Compiled current = compiled;
+        return current.categories().getOrDefault(category, current.emptyCategory());
+    }
+
+    /**
+     * Replaces the catalog and returns what changed. Existing columns must keep their position
+     * (ordinals are wire ids of the price stream), so columns can only be appended or have their
+     * attributes changed; anything else is rejected with 400. The catalog isn't persisted, a
+     * restart goes back to the built-in columns.
+     */
+    public synchronized ColumnCatalogChanges update(List<ColumnMetadata> columns) {
+        String previousVersion = compiled.catalog().getVersion();
+        List<ColumnMetadata> current = compiled.catalog().getColumns();
+        if (columns.size() < current.size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Columns cannot be removed from the catalog");
+        }
+        for (int i = 0; i < current.size(); i++) {
+            if (!current.get(i).getFieldName().equals(columns.get(i).getFieldName())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Column " + current.get(i).getFieldName()
+                        + " cannot move from ordinal " + i);
+            }
+        }
+        Set<String> fieldNames = new HashSet<>();
+        for (ColumnMetadata column : columns) {
+            if (column.getFieldName() == null || !fieldNames.add(column.getFieldName())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Column names must be present and unique: " + column.getFieldName());
+            }
+        }
+        publish(columns);
+        return getChanges(previousVersion);
+    }
+
+    /**
+     * Delta from a catalog version the client holds to the current one.
+     */
+    public synchronized ColumnCatalogChanges getChanges(String since) {
+        ColumnCatalog current = compiled.catalog();
+        var changes = ColumnCatalogChanges.builder()
+                .fromVersion(since)
+                .version(current.getVersion());
+
+        ColumnCatalog previous = since != null ? history.get(since) : null;
+        if (previous == null) {
+            return changes.full(true).columns(current.getColumns()).build();
+        }
+
+        List<ColumnMetadata> columns = current.getColumns();
+        List<ColumnMetadata> previousColumns = previous.getColumns();
+        List<ColumnMetadata> changed = new ArrayList<>();
+        for (int i = 0; i < previousColumns.size(); i++) {
+            if (!Objects.equals(previousColumns.get(i), columns.get(i))) {
+                changed.add(columns.get(i));
+            }
+        }
+        return changes
+                .added(columns.subList(previousColumns.size(), columns.size()))
+                .changed(changed)
+                .build();
+    }
+
+    private synchronized void publish(List<ColumnMetadata> columns) {
+        byte[] allJson = toJson(columns);
+        ColumnCatalog catalog = new ColumnCatalog(checksum(allJson), columns);
+        String version = catalog.getVersion();
+
+        Map<String, EncodedView> categories = new HashMap<>();
+        catalog.getCategories().forEach((category, members) ->
+                categories.put(category, encode(toJson(members), version + "-category-" + category)));
+
+        compiled = new Compiled(catalog,
+                encode(allJson, version + "-all"),
+                encode(toJson(catalog.getDefaults()), version + "-default"),
+                Map.copyOf(categories),
+                encode(toJson(List.of()), version + "-category"));
+        history.put(version, catalog);
+    }
+
+    private byte[] toJson(List<ColumnMetadata> columns) {
+        try {
+            return objectMapper.writeValueAsBytes(columns);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Column catalog is not serializable", e);
+        }
+    }
+
+    private static EncodedView encode(byte[] json, String etag) {
+        return new EncodedView(json, json.length >= MIN_GZIP_BYTES ? gzip(json) : null, etag);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String checksum(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     private static List<ColumnMetadata> initializeColumns() {
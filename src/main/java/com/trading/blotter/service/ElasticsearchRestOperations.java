@@ -0,0 +1,112 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Reactive wrapper over the low-level {@link RestClient}, for the admin and bulk APIs where we
+ * want control over the exact request body rather than the typed client.
+ */
+@Component
+@RequiredArgsConstructor
+public class ElasticsearchRestOperations {
+
+    private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Sends the request and parses the JSON response. Error statuses fail the Mono with a
+     * ResponseException, unless listed in the request's {@code ignore} parameter.
+     */
+    public Mono<JsonNode> perform(Request request) {
+        return execute(request).map(this::readBody);
+    }
+
+    /**
+     * Same as {@link #perform(Request)} but hands back the raw response body, for callers that
+     * stream it on without building a tree.
+     */
+    public Mono<byte[]> performForBytes(Request request) {
+        return execute(request).map(ElasticsearchRestOperations::readBytes);
+    }
+
+    private Mono<Response> execute(Request request) {
+        return Mono.<Response>create(sink -> {
+                    Cancellable cancellable = restClient.performRequestAsync(request, new ResponseListener() {
+                        @Override
+                        public void onSuccess(Response response) {
+                            sink.success(response);
+                        }
+
+                        @Override
+                        public void onFailure(Exception exception) {
+                            sink.error(exception);
+                        }
+                    });
+                    sink.onCancel(cancellable::cancel);
+                });
+    }
+
+    /**
+     * HEAD on a path, true if it exists (e.g. an index or alias name).
+     */
+    public Mono<Boolean> exists(String path) {
+        return Mono.<Response>create(sink -> {
+                    Cancellable cancellable = restClient.performRequestAsync(new Request("HEAD", path),
+                            new ResponseListener() {
+                                @Override
+                                public void onSuccess(Response response) {
+                                    sink.success(response);
+                                }
+
+                                @Override
+                                public void onFailure(Exception exception) {
+                                    sink.error(exception);
+                                }
+                            });
+                    sink.onCancel(cancellable::cancel);
+                })
+                .map(response -> response.getStatusLine().getStatusCode() == 200);
+    }
+
+    public static Request json(String method, String path, Object body) {
+        Request request = new Request(method, path);
+        request.setJsonEntity(body.toString());
+        return request;
+    }
+
+    private static byte[] readBytes(Response response) {
+        if (response.getEntity() == null) {
+            return new byte[0];
+        }
+        try {
+            return EntityUtils.toByteArray(response.getEntity());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode readBody(Response response) {
+        if (response.getEntity() == null) {
+            return objectMapper.createObjectNode();
+        }
+        try (InputStream content = response.getEntity().getContent()) {
+            return objectMapper.readTree(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.trading.blotter.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.FacetValue;
+import com.trading.blotter.model.ColumnMetadata;
+import com.trading.blotter.model.TradeDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHits;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Value counts for the filter dropdowns of the filterable keyword columns.
+ * <p>
+ * All columns are counted with one terms-aggregation request and the result is kept in memory,
+ * recomputed in the background, so opening a dropdown never waits on Elasticsearch.
+ */
+@Service
+@Slf4j
+public class FacetService {
+
+    // Unique per trade, a dropdown of it would be the whole index
+    private static final String EXCLUDED_COLUMN = "tradeId";
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final ReactiveElasticsearchOperations elasticsearchTemplate;
+    private final SearchProperties.Facets properties;
+    private final List<String> facetColumns;
+
+    private volatile Map<String, List<FacetValue>> facets = Map.of();
+    // System.nanoTime() when the last refresh started, NEVER before the first
+    private final AtomicLong lastRefresh = new AtomicLong(NEVER);
+    private Disposable refreshLoop;
+
+    public FacetService(ReactiveElasticsearchOperations elasticsearchTemplate, SearchProperties searchProperties,
+                        ColumnMetadataService columnMetadataService) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.properties = searchProperties.getFacets();
+        this.facetColumns = columnMetadataService.getAllColumns().stream()
+                .filter(ColumnMetadata::isFilterable)
+                .filter(column -> "string".equals(column.getDataType()))
+                .map(ColumnMetadata::getFieldName)
+                .filter(field -> !EXCLUDED_COLUMN.equals(field))
+                .toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        refreshLoop = Flux.interval(Duration.ZERO, properties.getRefreshInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshLoop != null) {
+            refreshLoop.dispose();
+        }
+    }
+
+    /**
+     * The counts in memory. Without any yet, one request per blotter.search.facets.min-refresh-interval
+     * waits for a refresh; the others get the empty result rather than another round trip.
+     */
+    public Mono<Map<String, List<FacetValue>>> getFacets() {
+        Map<String, List<FacetValue>> current = facets;
+        if (!current.isEmpty()) {
+            return Mono.just(current);
+        }
+        long now = System.nanoTime();
+        long last = lastRefresh.get();
+        if (last != NEVER && now - last < properties.getMinRefreshInterval().toNanos()) {
+            return Mono.just(current);
+        }
+        return lastRefresh.compareAndSet(last, now) ? count() : Mono.just(current);
+    }
+
+    public Mono<List<FacetValue>> getFacet(String field) {
+        if (!facetColumns.contains(field)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No facet for column: " + field);
+        }
+        return getFacets().map(all -> all.getOrDefault(field, List.of()));
+    }
+
+    /**
+     * Recounts every facet column. Errors keep the previous counts.
+     */
+    public Mono<Map<String, List<FacetValue>>> refresh() {
+        return Mono.defer(() -> {
+            lastRefresh.set(System.nanoTime());
+            return count();
+        });
+    }
+
+    private Mono<Map<String, List<FacetValue>>> count() {
+        var queryBuilder = NativeQuery.builder()
+                .withQuery(Query.of(q -> q.matchAll(m -> m)))
+                .withMaxResults(0)
+                .withTrackTotalHits(false);
+        for (String column : facetColumns) {
+            queryBuilder.withAggregation(column, Aggregation.of(a -> a.terms(t -> t
+                    .field(column)
+                    .size(properties.getMaxTerms()))));
+        }
+
+        long started = System.nanoTime();
+        return elasticsearchTemplate.searchForHits(queryBuilder.build(), TradeDocument.class)
+                .map(this::toFacets)
+                .doOnNext(counted -> {
+                    facets = counted;
+                    log.debug("Facets refreshed for {} columns in {} ms",
+                            counted.size(), (System.nanoTime() - started) / 1_000_000);
+                })
+                .onErrorResume(error -> {
+                    log.warn("Facet refresh failed: {}", error.getMessage());
+                    return Mono.just(facets);
+                });
+    }
+
+    private Map<String, List<FacetValue>> toFacets(ReactiveSearchHits<TradeDocument> hits) {
+        Map<String, List<FacetValue>> counted = new LinkedHashMap<>();
+        if (!(hits.getAggregations() instanceof ElasticsearchAggregations aggregations)) {
+            return counted;
+        }
+        for (String column : facetColumns) {
+            var aggregation = aggregations.get(column);
+            if (aggregation == null) {
+                continue;
+            }
+            Aggregate aggregate = aggregation.aggregation().getAggregate();
+            if (aggregate.isSterms()) {
+                counted.put(column, aggregate.sterms().buckets().array().stream()
+                        .map(bucket -> new FacetValue(bucket.key().stringValue(), bucket.docCount()))
+                        .toList());
+            } else {
+                counted.put(column, List.of()); // unmapped, no trades yet
+            }
+        }
+        return Collections.unmodifiableMap(counted);
+    }
+}
@@ -0,0 +1,151 @@
+package com.trading.blotter.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldAndFormat;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.model.ColumnMetadata;
+import com.trading.blotter.model.TradeDocument;
+import com.trading.blotter.model.TradeFields;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.DocValueField;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles requestedFields into fetch plans, validated against the column catalog and cached per
+ * distinct field list.
+ * <p>
+ * Elasticsearch loads and parses the whole 400-field _source of a hit however few fields the
+ * source filter keeps. When every requested column has doc values (core keyword, number and date
+ * columns) the plan reads them through docvalue_fields and skips _source; otherwise _source is
+ * filtered as before, since it has to be parsed anyway. Spring Data maps a hit without _source
+ * from its fields, so either way the trades come back as {@link TradeDocument}s.
+ * <p>
+ * Skipping _source must keep _id: the client requires it on every hit, and stored_fields=_none_
+ * drops it. Run the app with "check-fetch-plans" to verify the plans against a cluster.
+ */
+@Service
+public class FetchPlanService {
+
+    private static final String ADDITIONAL_FIELDS_PATH = "additionalFields.";
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+    private static final Set<String> DOC_VALUE_TYPES = Set.of("string", "number", "date");
+    // Any stored_fields turns _source off by default; tradeId isn't stored, so only _id is loaded.
+    // Spring Data 5.2 queries can't send _source: false themselves
+    private static final List<String> ID_ONLY_STORED_FIELDS = List.of("tradeId");
+
+    /**
+     * How a projection is fetched: the _source includes (null for the whole document), or the
+     * doc value fields when _source is skipped.
+     */
+    public record FetchPlan(List<String> columns, String[] sourceIncludes, List<DocValueField> docValueFields) {
+
+        public boolean isDocValuesOnly() {
+            return !docValueFields.isEmpty();
+        }
+    }
+
+    private static final FetchPlan WHOLE_SOURCE = new FetchPlan(List.of(), null, List.of());
+
+    private final ColumnMetadataService columnMetadataService;
+    private final SearchProperties.Projection properties;
+    private final Map<List<String>, FetchPlan> plans = new ConcurrentHashMap<>();
+
+    public FetchPlanService(ColumnMetadataService columnMetadataService, SearchProperties searchProperties) {
+        this.columnMetadataService = columnMetadataService;
+        this.properties = searchProperties.getProjection();
+    }
+
+    /**
+     * The plan for requested columns, by column name or additionalFields path. Unknown columns
+     * are rejected with 400.
+     */
+    public FetchPlan plan(List<String> requestedFields) {
+        if (requestedFields == null || requestedFields.isEmpty()) {
+            return WHOLE_SOURCE;
+        }
+        FetchPlan plan = plans.get(requestedFields);
+        if (plan == null) {
+            plan = compile(requestedFields);
+            if (plans.size() >= properties.getPlanCacheSize()) {
+                plans.clear();
+            }
+            plans.put(List.copyOf(requestedFields), plan);
+        }
+        return plan;
+    }
+
+    public void apply(FetchPlan plan, NativeQueryBuilder queryBuilder) {
+        if (plan.isDocValuesOnly()) {
+            // No _source, the hit is read from its _id and doc values instead
+            queryBuilder.withDocValueFields(plan.docValueFields())
+                    .withStoredFields(ID_ONLY_STORED_FIELDS);
+        } else if (plan.sourceIncludes() != null) {
+            queryBuilder.withSourceFilter(new FetchSourceFilter(plan.sourceIncludes(), null));
+        }
+    }
+
+    /**
+     * Same as {@link #apply(FetchPlan, NativeQueryBuilder)} for a request sent with the typed client.
+     */
+    public void apply(FetchPlan plan, SearchRequest.Builder searchRequest) {
+        if (plan.isDocValuesOnly()) {
+            searchRequest.docvalueFields(plan.docValueFields().stream()
+                            .map(field -> FieldAndFormat.of(f -> f.field(field.field()).format(field.format())))
+                            .toList())
+                    .source(source -> source.fetch(false));
+        } else if (plan.sourceIncludes() != null) {
+            searchRequest.source(source -> source.filter(filter -> filter.includes(List.of(plan.sourceIncludes()))));
+        }
+    }
+
+    private FetchPlan compile(List<String> requestedFields) {
+        List<ColumnMetadata> columns = new ArrayList<>();
+        for (String field : requestedFields) {
+            if (field == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "requestedFields must not contain null");
+            }
+            String name = field.startsWith(ADDITIONAL_FIELDS_PATH) ? field.substring(ADDITIONAL_FIELDS_PATH.length()) : field;
+            ColumnMetadata column = columnMetadataService.getColumn(name);
+            if (column == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown column: " + field);
+            }
+            if (!columns.contains(column)) {
+                columns.add(column);
+            }
+        }
+        List<String> names = columns.stream().map(ColumnMetadata::getFieldName).toList();
+
+        if (properties.isDocValueFields() && columns.stream().allMatch(FetchPlanService::hasDocValues)) {
+            List<DocValueField> docValueFields = columns.stream()
+                    .map(column -> new DocValueField(column.getFieldName(),
+                            "date".equals(column.getDataType()) ? DATE_FORMAT : null))
+                    .toList();
+            return new FetchPlan(names, null, docValueFields);
+        }
+
+        // Non-core columns live under additionalFields in _source
+        String[] includes = names.stream()
+                .map(name -> TradeFields.isCore(name) ? name : ADDITIONAL_FIELDS_PATH + name)
+                .toArray(String[]::new);
+        return new FetchPlan(names, includes, List.of());
+    }
+
+    /**
+     * Matches the index template: indexed core columns get doc values. Additional fields are
+     * nested under additionalFields and read from _source.
+     */
+    private static boolean hasDocValues(ColumnMetadata column) {
+        return TradeFields.isCore(column.getFieldName())
+                && (column.isFilterable() || column.isSortable())
+                && DOC_VALUE_TYPES.contains(column.getDataType());
+    }
+}
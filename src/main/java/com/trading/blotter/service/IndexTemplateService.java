@@ -0,0 +1,421 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trading.blotter.config.IndexProperties;
+import com.trading.blotter.model.ColumnMetadata;
+import com.trading.blotter.model.TradeFields;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Request;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns the trades mapping. The index template is generated from {@link ColumnMetadataService}:
+ * filterable/sortable columns get typed, indexed fields, everything else is kept in _source only
+ * (or in one flattened field), so the 380 additional fields cost no mapping entries, inverted
+ * index or doc_values.
+ * <p>
+ * The template is versioned: {@link #TEMPLATE_VERSION} is bumped when the generator changes and a
+ * checksum catches column metadata and layout changes. Existing indices keep the mapping they were
+ * created with; {@link #migrate()} reindexes them into a new index and moves the alias over.
+ */
+@Service
+@Slf4j
+public class IndexTemplateService {
+
+    public static final int TEMPLATE_VERSION = 1;
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration TASK_POLL_INTERVAL = Duration.ofSeconds(2);
+    private static final String ADDITIONAL_FIELDS = "additionalFields";
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    private final ElasticsearchRestOperations restOperations;
+    private final ColumnMetadataService columnMetadataService;
+    private final ObjectMapper objectMapper;
+    private final IndexProperties properties;
+    private final TradeIndexResolver indexResolver;
+    private final String alias;
+
+    public IndexTemplateService(ElasticsearchRestOperations restOperations, ColumnMetadataService columnMetadataService,
+                                ObjectMapper objectMapper, IndexProperties properties,
+                                TradeIndexResolver indexResolver) {
+        this.restOperations = restOperations;
+        this.columnMetadataService = columnMetadataService;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.indexResolver = indexResolver;
+        this.alias = indexResolver.getAlias();
+    }
+
+    /**
+     * Runs before the command line runners (data generation, migration) and before anything reads the index.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void installOnStartup() {
+        if (!properties.isManageTemplate()) {
+            return;
+        }
+        try {
+            ensureTemplate()
+                    .then(ensureIndex())
+                    .then(checkIndexVersions())
+                    .then(indexResolver.refreshMembership())
+                    .block(STARTUP_TIMEOUT);
+        } catch (RuntimeException e) {
+            log.warn("Could not verify the trades index template: {}", e.getMessage());
+        }
+    }
+
+    public ObjectNode buildMappings() {
+        ObjectNode fields = objectMapper.createObjectNode();
+        ObjectNode additional = objectMapper.createObjectNode();
+
+        for (ColumnMetadata column : columnMetadataService.getAllColumns()) {
+            boolean indexed = column.isFilterable() || column.isSortable();
+            if (TradeFields.isCore(column.getFieldName())) {
+                fields.set(column.getFieldName(), fieldMapping(column, indexed));
+            } else if (indexed) {
+                additional.set(column.getFieldName(), fieldMapping(column, true));
+            }
+            // Other additional fields are only kept in _source
+        }
+
+        if (properties.getAdditionalFields() == IndexProperties.AdditionalFieldsMapping.FLATTENED) {
+            fields.putObject(ADDITIONAL_FIELDS).put("type", "flattened");
+        } else {
+            ObjectNode additionalFields = fields.putObject(ADDITIONAL_FIELDS)
+                    .put("type", "object")
+                    .put("dynamic", false);
+            additionalFields.set("properties", additional);
+        }
+
+        // Spring Data type hint, never queried
+        fields.putObject("_class")
+                .put("type", "keyword")
+                .put("index", false)
+                .put("doc_values", false);
+
+        ObjectNode mappings = objectMapper.createObjectNode()
+                .put("dynamic", false);
+        mappings.putObject("_meta").put("template_version", TEMPLATE_VERSION);
+        if (indexResolver.isRoutedByBook()) {
+            // An unrouted write would land on the wrong shard for book-scoped searches
+            mappings.putObject("_routing").put("required", true);
+        }
+        mappings.set("properties", fields);
+        return mappings;
+    }
+
+    private ObjectNode fieldMapping(ColumnMetadata column, boolean indexed) {
+        ObjectNode mapping = objectMapper.createObjectNode();
+        switch (column.getDataType()) {
+            case "number" -> mapping.put("type", "double");
+            case "date" -> mapping.put("type", "date").put("format", DATE_FORMAT);
+            case "boolean" -> mapping.put("type", "boolean");
+            default -> mapping.put("type", "keyword");
+        }
+        if (!indexed) {
+            mapping.put("index", false).put("doc_values", false);
+        }
+        return mapping;
+    }
+
+    public ObjectNode buildTemplate() {
+        ObjectNode mappings = buildMappings();
+        ObjectNode template = objectMapper.createObjectNode();
+        template.putArray("index_patterns").add(alias + "*");
+        template.put("priority", 100);
+        template.put("version", TEMPLATE_VERSION);
+        ObjectNode body = objectMapper.createObjectNode();
+        if (properties.getNumberOfShards() != null) {
+            body.putObject("settings").put("index.number_of_shards", properties.getNumberOfShards());
+        }
+        body.set("mappings", mappings);
+        template.putObject("_meta").put("checksum", checksum(body));
+        template.set("template", body);
+        return template;
+    }
+
+    /**
+     * Installs the template unless Elasticsearch already has this version with the same columns.
+     * A newer template (from a newer deployment) is left alone.
+     */
+    public Mono<Void> ensureTemplate() {
+        ObjectNode template = buildTemplate();
+        Request get = new Request("GET", "/_index_template/" + properties.getTemplateName());
+        get.addParameter("ignore", "404");
+
+        return restOperations.perform(get)
+                .flatMap(response -> {
+                    JsonNode installed = response.path("index_templates").path(0).path("index_template");
+                    int installedVersion = installed.path("version").asInt(0);
+                    String installedChecksum = installed.path("_meta").path("checksum").asText("");
+
+                    if (installedVersion > TEMPLATE_VERSION) {
+                        log.warn("Index template {} is at version {}, newer than ours ({}), leaving it",
+                                properties.getTemplateName(), installedVersion, TEMPLATE_VERSION);
+                        return Mono.empty();
+                    }
+                    if (installedVersion == TEMPLATE_VERSION
+                            && installedChecksum.equals(template.path("_meta").path("checksum").asText())) {
+                        log.info("Index template {} is up to date (version {})",
+                                properties.getTemplateName(), TEMPLATE_VERSION);
+                        return Mono.empty();
+                    }
+                    return restOperations.perform(ElasticsearchRestOperations.json(
+                                    "PUT", "/_index_template/" + properties.getTemplateName(), template))
+                            .doOnNext(put -> log.info("Installed index template {} version {} (was {})",
+                                    properties.getTemplateName(), TEMPLATE_VERSION, installedVersion))
+                            .then();
+                });
+    }
+
+    /**
+     * Creates the first index behind the alias when nothing exists yet: the current time partition,
+     * or the single versioned index when unpartitioned.
+     */
+    private Mono<Void> ensureIndex() {
+        return restOperations.exists("/" + alias)
+                .flatMap(exists -> {
+                    if (exists) {
+                        return Mono.<Void>empty();
+                    }
+                    if (indexResolver.isPartitioned()) {
+                        return indexResolver.ensurePartitions(List.of(indexResolver.writeIndex(LocalDate.now())));
+                    }
+                    return createIndex(indexResolver.getBaseName(), true)
+                            .doOnNext(created -> log.info("Created index {} behind alias {}",
+                                    indexResolver.getBaseName(), alias))
+                            .then();
+                });
+    }
+
+    private Mono<Void> checkIndexVersions() {
+        return restOperations.perform(new Request("GET", "/" + alias + "/_mapping"))
+                .doOnNext(response -> response.fields().forEachRemaining(index -> {
+                    int version = index.getValue().path("mappings").path("_meta").path("template_version").asInt(0);
+                    if (version < TEMPLATE_VERSION) {
+                        log.warn("Index {} has mapping version {}, current is {}; run with 'migrate-index' to reindex",
+                                index.getKey(), version, TEMPLATE_VERSION);
+                    }
+                }))
+                .then();
+    }
+
+    /**
+     * Reindexes whatever the alias (or a legacy concrete index of the same name) points at into
+     * indices with the current template, in the current partition and routing layout, verifies
+     * the document count, then atomically moves the alias. Previous versioned indices are kept
+     * for rollback; a legacy concrete index has to be deleted to free its name for the alias.
+     * Writes to the sources are blocked from the start of the reindex, and allowed again if the
+     * migration fails.
+     */
+    public Mono<Void> migrate() {
+        boolean partitioned = indexResolver.isPartitioned();
+        // Unpartitioned: one index; partitioned: every partition of this version
+        String target = partitioned ? indexResolver.getPartitionPattern() : indexResolver.getBaseName();
+
+        return ensureTemplate()
+                .then(currentIndices())
+                .flatMap(current -> {
+                    List<String> sources = current.indices();
+                    if (sources.isEmpty()) {
+                        return ensureIndex();
+                    }
+                    boolean upToDate = sources.stream().allMatch(indexResolver::isCurrentLayout);
+                    if (upToDate) {
+                        log.info("Trades indices are already on template version {}", TEMPLATE_VERSION);
+                        return Mono.empty();
+                    }
+                    return resolve(target)
+                            .flatMap(existing -> existing.isEmpty()
+                                    ? Mono.just(target)
+                                    : Mono.error(new IllegalStateException(
+                                            "Migration target " + existing + " already exists, delete it first")))
+                            // Partitions are created by the reindex itself, from the template
+                            .flatMap(index -> partitioned ? Mono.empty() : createIndex(index, false))
+                            // Writes landing in the sources after the reindex read them would be lost
+                            .then(setWriteBlock(sources, true))
+                            .then(reindex(sources, partitioned)
+                                    .then(verifyCounts(sources, target))
+                                    .then(switchAlias(current, target))
+                                    .onErrorResume(error -> setWriteBlock(sources, false).then(Mono.error(error))))
+                            .then(indexResolver.refreshMembership());
+                });
+    }
+
+    private Mono<List<String>> resolve(String pattern) {
+        Request request = new Request("GET", "/_resolve/index/" + pattern);
+        request.addParameter("ignore", "404");
+        return restOperations.perform(request)
+                .map(response -> {
+                    List<String> indices = new ArrayList<>();
+                    response.path("indices").forEach(index -> indices.add(index.path("name").asText()));
+                    return indices;
+                });
+    }
+
+    private record CurrentIndices(List<String> indices, boolean legacyConcreteIndex) {
+    }
+
+    private Mono<CurrentIndices> currentIndices() {
+        Request get = new Request("GET", "/_alias/" + alias);
+        get.addParameter("ignore", "404");
+        return restOperations.perform(get)
+                .flatMap(response -> {
+                    List<String> indices = new ArrayList<>();
+                    Iterator<Map.Entry<String, JsonNode>> fields = response.fields();
+                    while (fields.hasNext()) {
+                        Map.Entry<String, JsonNode> field = fields.next();
+                        if (field.getValue().has("aliases")) {
+                            indices.add(field.getKey());
+                        }
+                    }
+                    if (!indices.isEmpty()) {
+                        return Mono.just(new CurrentIndices(indices, false));
+                    }
+                    return restOperations.exists("/" + alias)
+                            .map(exists -> exists
+                                    ? new CurrentIndices(List.of(alias), true)
+                                    : new CurrentIndices(List.of(), false));
+                });
+    }
+
+    private Mono<JsonNode> createIndex(String index, boolean withAlias) {
+        ObjectNode body = objectMapper.createObjectNode();
+        if (withAlias) {
+            body.putObject("aliases").putObject(alias).put("is_write_index", true);
+        }
+        return restOperations.perform(ElasticsearchRestOperations.json("PUT", "/" + index, body));
+    }
+
+    /**
+     * Blocks (or allows again) writes to the source indices while they are copied. Ingest fails
+     * until the alias has moved; the sources stay read-only afterwards, kept for rollback.
+     */
+    private Mono<Void> setWriteBlock(List<String> sources, boolean blocked) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("index.blocks.write", blocked);
+        return restOperations.perform(ElasticsearchRestOperations.json("PUT",
+                        "/" + String.join(",", sources) + "/_settings", body))
+                .doOnNext(response -> log.info("Writes to {} {}", sources, blocked ? "blocked" : "allowed again"))
+                .then();
+    }
+
+    private Mono<Void> reindex(List<String> sources, boolean partitioned) {
+        String target = partitioned ? indexResolver.getPartitionPattern() : indexResolver.getBaseName();
+        ObjectNode body = objectMapper.createObjectNode();
+        ObjectNode source = body.putObject("source");
+        ArrayNode indices = source.putArray("index");
+        sources.forEach(indices::add);
+        source.put("size", 5000);
+        // With partitions the script picks each document's index, dest only has to be valid
+        body.putObject("dest").put("index", partitioned ? indexResolver.writeIndex(null) : target);
+        String script = indexResolver.reindexScript();
+        if (script != null) {
+            body.putObject("script")
+                    .put("lang", "painless")
+                    .put("source", script);
+        }
+
+        Request request = ElasticsearchRestOperations.json("POST", "/_reindex", body);
+        request.addParameter("wait_for_completion", "false");
+        request.addParameter("slices", "auto");
+
+        log.info("Reindexing {} into {}", sources, target);
+        return restOperations.perform(request)
+                .map(response -> response.path("task").asText())
+                .flatMap(this::awaitTask)
+                .doOnNext(task -> log.info("Reindex into {} done: {} created, {} updated",
+                        target, task.path("response").path("created").asLong(),
+                        task.path("response").path("updated").asLong()))
+                .then();
+    }
+
+    private Mono<JsonNode> awaitTask(String taskId) {
+        return Flux.interval(TASK_POLL_INTERVAL)
+                .concatMap(tick -> restOperations.perform(new Request("GET", "/_tasks/" + taskId)), 1)
+                .doOnNext(task -> {
+                    JsonNode status = task.path("task").path("status");
+                    log.info("Reindex progress: {}/{}", status.path("created").asLong(), status.path("total").asLong());
+                })
+                .filter(task -> task.path("completed").asBoolean())
+                .next()
+                .flatMap(task -> {
+                    JsonNode failures = task.path("response").path("failures");
+                    if (task.has("error") || failures.size() > 0) {
+                        return Mono.error(new IllegalStateException("Reindex failed: "
+                                + (task.has("error") ? task.path("error") : failures.get(0))));
+                    }
+                    return Mono.just(task);
+                });
+    }
+
+    private Mono<Void> verifyCounts(List<String> sources, String target) {
+        return restOperations.perform(new Request("POST", "/" + target + "/_refresh"))
+                .then(Mono.zip(count(String.join(",", sources)), count(target)))
+                .flatMap(counts -> {
+                    if (!counts.getT1().equals(counts.getT2())) {
+                        return Mono.error(new IllegalStateException("Reindex count mismatch: "
+                                + counts.getT1() + " in " + sources + ", " + counts.getT2() + " in " + target));
+                    }
+                    log.info("Verified {} documents in {}", counts.getT2(), target);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Long> count(String index) {
+        return restOperations.perform(new Request("GET", "/" + index + "/_count"))
+                .map(response -> response.path("count").asLong());
+    }
+
+    private Mono<Void> switchAlias(CurrentIndices current, String target) {
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode actions = body.putArray("actions");
+        if (current.legacyConcreteIndex()) {
+            actions.addObject().putObject("remove_index").put("index", alias);
+        } else {
+            for (String index : current.indices()) {
+                actions.addObject().putObject("remove").put("index", index).put("alias", alias);
+            }
+        }
+        ObjectNode add = actions.addObject().putObject("add")
+                .put("index", target)
+                .put("alias", alias);
+        if (!indexResolver.isPartitioned()) {
+            add.put("is_write_index", true); // partitions are written to directly
+        }
+
+        return restOperations.perform(ElasticsearchRestOperations.json("POST", "/_aliases", body))
+                .doOnNext(response -> log.info("Alias {} now points to {}", alias, target))
+                .then();
+    }
+
+    private static String checksum(JsonNode template) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(template.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trading.blotter.config.IndexProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Request;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Housekeeping of the time partitions: pre-creates the current and next period so the first
+ * trades of a month don't pay for index creation, and seals partitions whose period is over.
+ * <p>
+ * Sealing puts a write block on the partition, force-merges it to one segment and optionally moves
+ * it to a colder tier. Late bookings into a sealed partition are rejected by Elasticsearch; the
+ * {@code seal-after} grace period is there to keep that rare. Off unless {@code seal-partitions} is set.
+ */
+@Service
+@Slf4j
+public class PartitionMaintenanceService {
+
+    private final ElasticsearchRestOperations restOperations;
+    private final TradeIndexResolver indexResolver;
+    private final IndexProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private Disposable maintenanceLoop;
+
+    public PartitionMaintenanceService(ElasticsearchRestOperations restOperations, TradeIndexResolver indexResolver,
+                                       IndexProperties properties, ObjectMapper objectMapper) {
+        this.restOperations = restOperations;
+        this.indexResolver = indexResolver;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!indexResolver.isPartitioned()) {
+            return;
+        }
+        maintenanceLoop = Flux.interval(Duration.ZERO, properties.getMaintenanceInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> runMaintenance()
+                        .onErrorResume(error -> {
+                            log.warn("Partition maintenance failed: {}", error.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintenanceLoop != null) {
+            maintenanceLoop.dispose();
+        }
+    }
+
+    public Mono<Void> runMaintenance() {
+        LocalDate today = LocalDate.now();
+        String current = indexResolver.writeIndex(today);
+        String next = indexResolver.writeIndex(indexResolver.nextPeriod(today));
+
+        return indexResolver.refreshMembership()
+                .then(indexResolver.ensurePartitions(List.of(current, next)))
+                .then(properties.isSealPartitions() ? sealFinished(today) : Mono.empty());
+    }
+
+    private Mono<Void> sealFinished(LocalDate today) {
+        LocalDate sealBefore = today.minusDays(properties.getSealAfter().toDays());
+        return Flux.fromIterable(indexResolver.getMembers())
+                .filter(index -> {
+                    LocalDate end = indexResolver.periodEnd(index);
+                    return end != null && end.isBefore(sealBefore);
+                })
+                .concatMap(index -> isSealed(index)
+                        .flatMap(sealed -> sealed ? Mono.<Void>empty() : seal(index)))
+                .then();
+    }
+
+    private Mono<Boolean> isSealed(String index) {
+        Request get = new Request("GET", "/" + index + "/_settings/index.blocks.write");
+        get.addParameter("flat_settings", "true");
+        return restOperations.perform(get)
+                .map(response -> response.path(index).path("settings").path("index.blocks.write").asBoolean(false));
+    }
+
+    private Mono<Void> seal(String index) {
+        Request forceMerge = new Request("POST", "/" + index + "/_forcemerge");
+        forceMerge.addParameter("max_num_segments", "1");
+        forceMerge.addParameter("wait_for_completion", "false");
+
+        return restOperations.perform(new Request("PUT", "/" + index + "/_block/write"))
+                .then(restOperations.perform(forceMerge))
+                .then(moveToSealedTier(index))
+                .doOnSuccess(ignored -> log.info("Sealed partition {}", index));
+    }
+
+    private Mono<Void> moveToSealedTier(String index) {
+        String tier = properties.getSealedTierPreference();
+        if (tier == null || tier.isBlank()) {
+            return Mono.empty();
+        }
+        ObjectNode settings = objectMapper.createObjectNode()
+                .put("index.routing.allocation.include._tier_preference", tier);
+        return restOperations.perform(ElasticsearchRestOperations.json("PUT", "/" + index + "/_settings", settings))
+                .then();
+    }
+}
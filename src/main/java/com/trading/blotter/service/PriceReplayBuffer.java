@@ -0,0 +1,50 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.dto.PriceUpdate;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Ring of the latest updates generated by the tick engine, indexed by sequence, so a reconnecting
+ * stream gets only the updates it missed. Engine thread only.
+ */
+class PriceReplayBuffer {
+
+    private final PriceUpdate[] ring;
+    private final int mask;
+    // Sequence of the newest update held, 0 while empty
+    private long last;
+
+    PriceReplayBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = new PriceUpdate[size];
+        this.mask = size - 1;
+    }
+
+    void add(PriceUpdate update) {
+        ring[(int) (update.getSequence() & mask)] = update;
+        last = update.getSequence();
+    }
+
+    /**
+     * Whether every update after {@code sequence} is still held. Sequences ahead of the engine,
+     * from before a restart, are not.
+     */
+    boolean covers(long sequence) {
+        return sequence <= last && sequence >= last - ring.length;
+    }
+
+    /**
+     * Passes the updates after {@code sequence} of the trades {@code tradeIds} accepts, oldest
+     * first. Only meaningful when {@link #covers} it.
+     */
+    void replay(long sequence, Predicate<String> tradeIds, Consumer<PriceUpdate> consumer) {
+        for (long next = sequence + 1; next <= last; next++) {
+            PriceUpdate update = ring[(int) (next & mask)];
+            if (tradeIds.test(update.getTradeId())) {
+                consumer.accept(update);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.model.PriceField;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense, allocation-free store of live price state.
+ * <p>
+ * Trades are assigned a stable ordinal on first sight (tradeId -> ordinal index in front),
+ * and the {@link PriceField} columns are kept as fixed-point longs in fixed-size pages,
+ * row-major so one tick touches one cache line. Pages are never moved once allocated, so the
+ * single writer (the tick engine) never races with growth, and readers only see whole values.
+ * <p>
+ * Ids a client subscribes to may not be trades at all, so they get temporary ordinals, which
+ * {@link #release} hands back for reuse once nothing subscribes to them. Trades known to exist,
+ * such as those read from Elasticsearch, keep theirs.
+ */
+@Component
+public class PriceStateStore {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int STRIDE = PriceField.count() + 1; // + initialized flag
+
+    private final ConcurrentHashMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] tradeIds = new String[PAGE_SIZE];
+    private volatile long[][] pages = new long[0][];
+    private volatile int size;
+    // Ids with a temporary ordinal, and released ordinals to hand out again (guarded by this)
+    private final Set<String> temporary = ConcurrentHashMap.newKeySet();
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * Returns the ordinal of a trade known to exist, assigning the next free one if it is new.
+     * It is never released.
+     */
+    public int ordinal(String tradeId) {
+        Integer ordinal = ordinals.get(tradeId);
+        return ordinal != null && !temporary.contains(tradeId) ? ordinal : assign(tradeId, false);
+    }
+
+    /**
+     * Returns the ordinal of an id a client asked for, assigning a temporary one if it is new.
+     */
+    public int temporaryOrdinal(String tradeId) {
+        Integer ordinal = ordinals.get(tradeId);
+        return ordinal != null ? ordinal : assign(tradeId, true);
+    }
+
+    /**
+     * Frees the ordinal of {@code tradeId} for reuse if it is temporary, clearing its prices.
+     * Intended for the single engine thread, once nothing subscribes to the id.
+     */
+    public synchronized void release(String tradeId) {
+        if (!temporary.remove(tradeId)) {
+            return;
+        }
+        int ordinal = ordinals.remove(tradeId);
+        int offset = offset(ordinal);
+        Arrays.fill(page(ordinal), offset, offset + STRIDE, 0);
+        tradeIds[ordinal] = null;
+        free.push(ordinal);
+    }
+
+
+    /**
+     * Returns the ordinal of the trade or -1 if the store has never seen it.
+     */
+    public int ordinalIfPresent(String tradeId) {
+        Integer ordinal = ordinals.get(tradeId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String tradeId(int ordinal) {
+        return tradeIds[ordinal];
+    }
+
+    /**
+     * One past the highest ordinal ever assigned; released ordinals below it have no trade.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isInitialized(int ordinal) {
+        return page(ordinal)[offset(ordinal) + PriceField.count()] != 0;
+    }
+
+    public long get(int ordinal, PriceField field) {
+        return page(ordinal)[offset(ordinal) + field.ordinal()];
+    }
+
+    /**
+     * Writes all price columns of one trade. Intended for the single engine thread.
+     */
+    public void set(int ordinal, long pnl, long mtm, long delta, long gamma) {
+        long[] page = page(ordinal);
+        int offset = offset(ordinal);
+        page[offset + PriceField.PNL.ordinal()] = pnl;
+        page[offset + PriceField.MTM.ordinal()] = mtm;
+        page[offset + PriceField.DELTA.ordinal()] = delta;
+        page[offset + PriceField.GAMMA.ordinal()] = gamma;
+        page[offset + PriceField.count()] = 1;
+    }
+
+    private synchronized int assign(String tradeId, boolean temporaryOrdinal) {
+        Integer existing = ordinals.get(tradeId);
+        if (existing != null) {
+            if (!temporaryOrdinal) {
+                temporary.remove(tradeId); // turned out to be a real trade
+            }
+            return existing;
+        }
+        if (temporaryOrdinal) {
+            temporary.add(tradeId);
+        }
+        if (!free.isEmpty()) {
+            int ordinal = free.pop();
+            tradeIds[ordinal] = tradeId;
+            ordinals.put(tradeId, ordinal);
+            return ordinal;
+        }
+
+        int ordinal = size;
+        if ((ordinal >> PAGE_SHIFT) >= pages.length) {
+            long[][] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new long[PAGE_SIZE * STRIDE];
+            pages = grown;
+        }
+        if (ordinal >= tradeIds.length) {
+            tradeIds = Arrays.copyOf(tradeIds, tradeIds.length + PAGE_SIZE);
+        }
+        tradeIds[ordinal] = tradeId;
+        size = ordinal + 1;
+        ordinals.put(tradeId, ordinal);
+        return ordinal;
+    }
+
+    private long[] page(int ordinal) {
+        return pages[ordinal >> PAGE_SHIFT];
+    }
+
+    private static int offset(int ordinal) {
+        return (ordinal & PAGE_MASK) * STRIDE;
+    }
+}
@@ -1,125 +1,622 @@
 package com.trading.blotter.service;
 
+import com.trading.blotter.config.PriceStreamProperties;
+import com.trading.blotter.dto.PriceStreamStats;
 import com.trading.blotter.dto.PriceUpdate;
+import com.trading.blotter.dto.TradeSearchResponse;
+import com.trading.blotter.model.PriceField;
+import com.trading.blotter.model.TradeDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+/**
+ * Single long-lived tick engine shared by all SSE clients.
+ * Ticks are routed through a tradeId -> subscribers registry, so the cost of a tick
+ * is proportional to the number of clients interested in that trade only.
+ * <p>
+ * Metrics: blotter.prices.subscribers, the updates waiting in subscriber queues
+ * (blotter.prices.buffer.queued) and conflation buffers (blotter.prices.buffer.pending), generated
+ * ticks, failed emits by reason, updates held back for the next flush by a full queue
+ * (blotter.prices.overflow.retries), and blotter.prices.tick.to.wire, from the tick to the HTTP
+ * writer taking the update. Per client class: updates dropped, streams disconnected, and the
+ * worst subscriber lag.
+ * <p>
+ * Client classes (blotter.prices.client-classes) set the queue size and overflow policy of their
+ * streams; see {@link PriceStreamProperties.OverflowPolicy}.
+ * <p>
+ * Every generated update gets the next engine sequence and is kept in a replay ring
+ * (blotter.prices.replay-capacity). Search results report the sequence their live prices are
+ * consistent with; a stream opened after that sequence, or a reconnect with the last resume point
+ * it received, is first sent what it missed since, conflated per trade. When the ring no longer
+ * goes back that far the stream gets the current prices of its trades instead
+ * (blotter.prices.resumes by outcome). Resume points are "epoch:sequence", the epoch changing on
+ * every start, so a point handed out by an earlier process also gets current prices.
+ */
 @Service
 @Slf4j
 public class PriceStreamService {
 
-    //private final Sinks.Many<PriceUpdate> priceSink = Sinks.many().multicast().onBackpressureBuffer(256);
-    private final Sinks.Many<PriceUpdate> priceSink = Sinks.many().multicast().onBackpressureBuffer(1024, false);
-    private final Random random = new Random();
-    private final ConcurrentHashMap<String, PriceState> priceCache = new ConcurrentHashMap<>();
+    // Past every sequence: the ring never covers it, so a resume from it gets current prices
+    private static final long FROM_SNAPSHOT = Long.MAX_VALUE;
 
-    private static class PriceState {
-        BigDecimal pnl;
-        BigDecimal mtm;
-        BigDecimal delta;
-        BigDecimal gamma;
+    private final PriceStreamProperties properties;
+    private final Random random = new Random(); // engine thread only
+    private final PriceReplayBuffer replayBuffer; // engine thread only
+    private long sequence; // engine thread only
+    // Sequence of the last update whose prices are in the store
+    private volatile long publishedSequence;
+    // Sequences restart with the process, so resume points carry which process they came from
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final PriceStateStore priceStore;
+    private final PriceTickListener[] tickListeners;
 
-        PriceState(BigDecimal pnl, BigDecimal mtm, BigDecimal delta, BigDecimal gamma) {
-            this.pnl = pnl;
-            this.mtm = mtm;
-            this.delta = delta;
-            this.gamma = gamma;
-        }
+    // Subscription registry: tradeId -> subscribers interested in that trade
+    private final ConcurrentHashMap<String, Set<PriceSubscriber>> subscriptions = new ConcurrentHashMap<>();
+    // Subscribers without a tradeIds filter receive every tick
+    private final Set<PriceSubscriber> wildcardSubscribers = ConcurrentHashMap.newKeySet();
+    private final Set<PriceSubscriber> allSubscribers = ConcurrentHashMap.newKeySet();
+    // Subscribed streams by id
+    private final Map<String, PriceSubscriber> streams = new ConcurrentHashMap<>();
+
+    // Ordinals of subscribed trades, rebuilt on (un)subscribe so the tick path can index it randomly.
+    // While a wildcard subscriber is registered the tick path picks from every ordinal instead.
+    private volatile int[] activeOrdinals = new int[0];
+
+    private final Scheduler engineScheduler = Schedulers.newSingle("price-engine", true);
+    private Disposable tickEngine;
+    private Disposable flushLoop;
+
+    private final Counter ticks;
+    private final Counter overflowRetries;
+    private final Counter replayedResumes;
+    private final Counter snapshotResumes;
+    private final Map<Sinks.EmitResult, Counter> emitFailures = new EnumMap<>(Sinks.EmitResult.class);
+    private final Timer tickToWire;
+    private final Map<String, PriceSubscriber.SubscriberClass> subscriberClasses = new HashMap<>();
+
+    /**
+     * An open price stream: the id to edit it by, and its updates.
+     */
+    public record PriceStream(String id, Flux<PriceUpdate> updates) {
     }
 
-    public PriceStreamService() {
-        //startPriceGenerator();
+    public PriceStreamService(PriceStreamProperties properties, PriceStateStore priceStore,
+                              List<PriceTickListener> tickListeners, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.priceStore = priceStore;
+        this.tickListeners = tickListeners.toArray(new PriceTickListener[0]);
+        this.replayBuffer = new PriceReplayBuffer(properties.getReplayCapacity());
+
+        Gauge.builder("blotter.prices.subscribers", allSubscribers, Set::size)
+                .register(meterRegistry);
+        Gauge.builder("blotter.prices.buffer.queued", this, PriceStreamService::queued)
+                .register(meterRegistry);
+        Gauge.builder("blotter.prices.buffer.pending", this, PriceStreamService::pending)
+                .register(meterRegistry);
+        this.ticks = Counter.builder("blotter.prices.ticks")
+                .register(meterRegistry);
+        this.overflowRetries = Counter.builder("blotter.prices.overflow.retries")
+                .register(meterRegistry);
+        this.replayedResumes = Counter.builder("blotter.prices.resumes")
+                .tag("outcome", "replay")
+                .register(meterRegistry);
+        this.snapshotResumes = Counter.builder("blotter.prices.resumes")
+                .tag("outcome", "snapshot")
+                .register(meterRegistry);
+        for (Sinks.EmitResult result : Sinks.EmitResult.values()) {
+            if (result.isFailure()) {
+                emitFailures.put(result, Counter.builder("blotter.prices.emit.failures")
+                        .tag("reason", result.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry));
+            }
+        }
+        // Whole milliseconds: updates are stamped with the wall clock
+        this.tickToWire = Timer.builder("blotter.prices.tick.to.wire")
+                .serviceLevelObjectives(Duration.ofMillis(10), Duration.ofMillis(50), Duration.ofMillis(100),
+                        Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1))
+                .register(meterRegistry);
+
+        Map<String, PriceStreamProperties.ClientClass> clientClasses = new LinkedHashMap<>(properties.getClientClasses());
+        clientClasses.putIfAbsent(properties.getDefaultClientClass(), new PriceStreamProperties.ClientClass());
+        clientClasses.forEach((name, clientClass) -> {
+            subscriberClasses.put(name, new PriceSubscriber.SubscriberClass(name, clientClass.getOverflowPolicy(),
+                    clientClass.getBufferSize() != null ? clientClass.getBufferSize() : properties.getSubscriberBufferSize(),
+                    properties.getResyncRetry().toMillis(),
+                    Counter.builder("blotter.prices.dropped").tag("clientClass", name).register(meterRegistry),
+                    Counter.builder("blotter.prices.disconnects").tag("clientClass", name).register(meterRegistry)));
+            // Stragglers show up as the worst lag of their class; /actuator/pricestreams has each stream's
+            Gauge.builder("blotter.prices.lag.max", this, service -> service.maxLagMillis(name))
+                    .tag("clientClass", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        });
     }
 
     public Flux<PriceUpdate> getPriceStream(Set<String> subscribedTrades) {
-        startPriceGenerator(subscribedTrades);
-        return priceSink.asFlux()
+        return getPriceStream(subscribedTrades, null);
+    }
+
+    /**
+     * Price stream with the queue size and overflow policy of {@code clientClass}, the default
+     * class when null. Unknown classes are rejected with 400. A stream closed for falling behind
+     * ends with a {@link SlowConsumerException}. No tradeIds means every trade.
+     */
+    public Flux<PriceUpdate> getPriceStream(Set<String> subscribedTrades, String clientClass) {
+        return openStream(subscribedTrades, subscribedTrades.isEmpty(), clientClass).updates();
+    }
+
+    public PriceStream openStream(Set<String> tradeIds, boolean wildcard, String clientClass) {
+        return openStream(tradeIds, wildcard, clientClass, null);
+    }
+
+    /**
+     * A stream whose trades can be edited with {@link #updateSubscription} by its id once it is
+     * subscribed, which is also when the engine starts routing ticks to it. A stream that is never
+     * subscribed holds nothing.
+     * With {@code resumeFrom}, a search's price sequence or a resume point of an earlier stream,
+     * the updates after it are sent first.
+     */
+    public PriceStream openStream(Set<String> tradeIds, boolean wildcard, String clientClass, String resumeFrom) {
+        String className = clientClass != null ? clientClass : properties.getDefaultClientClass();
+        PriceSubscriber.SubscriberClass subscriberClass = subscriberClasses.get(className);
+        if (subscriberClass == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown client class: " + clientClass);
+        }
+        PriceSubscriber subscriber = new PriceSubscriber(tradeIds, wildcard, subscriberClass,
+                resumeFrom != null ? resumeSequence(resumeFrom) : -1);
+
+        Flux<PriceUpdate> updates = Flux.defer(() -> {
+                    register(subscriber);
+                    return subscriber.asFlux()
+                            .doOnNext(update -> tickToWire.record(
+                                    System.currentTimeMillis() - update.getTimestamp(), TimeUnit.MILLISECONDS))
+                            .doFinally(signal -> unregister(subscriber));
+                })
                 .doOnSubscribe(s -> log.info("New SSE subscriber connected"))
                 .doOnCancel(() -> log.info("SSE subscriber disconnected"))
-                .doOnError(error -> log.error("Error in price stream", error));
+                .doOnError(error -> {
+                    if (error instanceof SlowConsumerException) {
+                        log.warn("{}, disconnected", error.getMessage());
+                    } else if (error instanceof ResponseStatusException) {
+                        log.warn("Price stream ended: {}", error.getMessage());
+                    } else {
+                        log.error("Error in price stream", error);
+                    }
+                });
+        return new PriceStream(subscriber.getId(), updates);
+    }
+
+    /**
+     * Adds and removes trades of an open stream without reconnecting. Added trades are caught up
+     * from where the stream started. Unknown or closed streams are 404, streams of every trade
+     * can't be edited (400).
+     */
+    public PriceStreamStats updateSubscription(String streamId, Collection<String> add, Collection<String> remove) {
+        PriceSubscriber subscriber = streams.get(streamId);
+        if (subscriber == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No open price stream: " + streamId);
+        }
+        if (subscriber.isWildcard()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Stream " + streamId + " receives every trade");
+        }
+        synchronized (subscriber) {
+            if (subscriber.isClosed()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No open price stream: " + streamId);
+            }
+            for (String tradeId : remove) {
+                if (subscriber.getTradeIds().remove(tradeId) && subscriber.isRegistered()) {
+                    unroute(tradeId, subscriber);
+                }
+            }
+            Set<String> added = new HashSet<>();
+            for (String tradeId : add) {
+                if (subscriber.getTradeIds().add(tradeId) && subscriber.isRegistered()) {
+                    route(tradeId, subscriber);
+                    added.add(tradeId);
+                }
+            }
+            if (subscriber.isRegistered()) {
+                refreshActiveTrades();
+                if (!added.isEmpty()) {
+                    long from = subscriber.getStartSequence();
+                    engineScheduler.schedule(() -> replay(subscriber, from, added));
+                }
+            }
+        }
+        log.debug("Subscriber {} now follows {} trades (+{} -{})",
+                streamId, subscriber.getTradeIds().size(), add.size(), remove.size());
+        return subscriber.stats();
+    }
+
+    /**
+     * Sends only {@code visible} trades of an open stream at full rate; the others are refreshed
+     * every blotter.prices.viewports.offscreen-refresh, or, without {@code offscreenRefresh}, caught
+     * up when they become visible again. A null {@code visible} clears the viewport.
+     */
+    public PriceStreamStats setViewport(String streamId, Set<String> visible, boolean offscreenRefresh) {
+        PriceSubscriber subscriber = streams.get(streamId);
+        if (subscriber == null || subscriber.isClosed()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No open price stream: " + streamId);
+        }
+        subscriber.setViewport(visible == null ? null : new PriceSubscriber.Viewport(Set.copyOf(visible),
+                offscreenRefresh ? properties.getViewports().getOffscreenRefresh().toNanos() : 0));
+        log.debug("Subscriber {} shows {} trades", streamId, visible == null ? "all" : visible.size());
+        return subscriber.stats();
+    }
+
+    private void register(PriceSubscriber subscriber) {
+        // Read before routing: ticks racing the routing are replayed, at worst twice
+        long from = subscriber.getResumeAfter() >= 0 ? subscriber.getResumeAfter() : publishedSequence;
+        synchronized (subscriber) {
+            subscriber.setStartSequence(from);
+            subscriber.setRegistered(true);
+            streams.put(subscriber.getId(), subscriber);
+            allSubscribers.add(subscriber);
+            if (subscriber.isWildcard()) {
+                wildcardSubscribers.add(subscriber);
+            } else {
+                subscriber.getTradeIds().forEach(tradeId -> route(tradeId, subscriber));
+                refreshActiveTrades();
+            }
+        }
+        engineScheduler.schedule(() -> replay(subscriber, from, null));
+        ensureEngineStarted();
+        log.debug("Registered subscriber {} for {} trades", subscriber.getId(), subscriber.getTradeIds().size());
+    }
+
+    private void unregister(PriceSubscriber subscriber) {
+        synchronized (subscriber) {
+            subscriber.setClosed(true);
+            subscriber.setRegistered(false);
+            streams.remove(subscriber.getId());
+            allSubscribers.remove(subscriber);
+            if (subscriber.isWildcard()) {
+                wildcardSubscribers.remove(subscriber);
+            } else {
+                subscriber.getTradeIds().forEach(tradeId -> unroute(tradeId, subscriber));
+                refreshActiveTrades();
+            }
+        }
+        stopEngineIfIdle();
+        log.debug("Unregistered subscriber {}", subscriber.getId());
+    }
+
+    /**
+     * Ends an open stream with {@code error}, e.g. when the trades it follows can't be resolved.
+     */
+    public void failStream(String streamId, Throwable error) {
+        PriceSubscriber subscriber = streams.get(streamId);
+        if (subscriber != null) {
+            subscriber.fail(error);
+        }
+    }
+
+    /**
+     * Runs {@code task} on the engine thread, the only writer of the price store, once subscribed.
+     * For state the engine owns, such as seeding prices from Elasticsearch.
+     */
+    public Mono<Void> onEngine(Runnable task) {
+        return Mono.fromRunnable(task).subscribeOn(engineScheduler).then();
+    }
+
+    /**
+     * Sends {@code subscriber} the updates of {@code tradeIds} (all of its trades when null) after
+     * {@code from}, or their current prices when the ring doesn't go back that far. Engine thread.
+     */
+    private void replay(PriceSubscriber subscriber, long from, Set<String> tradeIds) {
+        if (subscriber.isClosed()) {
+            return;
+        }
+        Predicate<String> wanted = tradeIds != null ? tradeIds::contains
+                : subscriber.isWildcard() ? tradeId -> true : subscriber.getTradeIds()::contains;
+        Map<String, PriceUpdate> missed = new LinkedHashMap<>();
+        long resumedFrom;
+        if (replayBuffer.covers(from)) {
+            replayBuffer.replay(from, wanted, update -> missed.merge(update.getTradeId(), update, PriceUpdate::merge));
+            resumedFrom = from;
+            replayedResumes.increment();
+        } else {
+            for (int ordinal = 0; ordinal < priceStore.size(); ordinal++) {
+                String tradeId = priceStore.tradeId(ordinal);
+                if (priceStore.isInitialized(ordinal) && wanted.test(tradeId)) {
+                    missed.put(tradeId, currentPrices(ordinal));
+                }
+            }
+            // Below the current sequence, so updates held back off-screen are resent after a reconnect
+            resumedFrom = Math.max(0, sequence - 1);
+            snapshotResumes.increment();
+        }
+        missed.values().forEach(subscriber::replay);
+        subscriber.resumed(resumedFrom);
+        log.debug("Subscriber {} caught up on {} trades after sequence {}", subscriber.getId(), missed.size(), from);
+    }
+
+    private PriceUpdate currentPrices(int ordinal) {
+        PriceUpdate update = PriceUpdate.of(priceStore.tradeId(ordinal),
+                priceStore.get(ordinal, PriceField.PNL), priceStore.get(ordinal, PriceField.MTM),
+                priceStore.get(ordinal, PriceField.DELTA), priceStore.get(ordinal, PriceField.GAMMA));
+        update.setSequence(sequence);
+        return update;
+    }
+
+    private void route(String tradeId, PriceSubscriber subscriber) {
+        // Added inside compute, so a concurrent unroute can't drop the set between lookup and add
+        subscriptions.compute(tradeId, (k, subscribers) -> {
+            if (subscribers == null) {
+                subscribers = ConcurrentHashMap.newKeySet();
+            }
+            subscribers.add(subscriber);
+            return subscribers;
+        });
+    }
+
+    private void unroute(String tradeId, PriceSubscriber subscriber) {
+        Set<PriceSubscriber> remaining = subscriptions.computeIfPresent(tradeId, (k, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        if (remaining == null) {
+            engineScheduler.schedule(() -> release(tradeId));
+        }
+    }
+
+    /**
+     * Hands back the ordinal of an id nobody subscribes to any more, unless it is a known trade.
+     * Engine thread; checked inside compute, so it can't race with the id being routed again.
+     */
+    private void release(String tradeId) {
+        subscriptions.compute(tradeId, (k, subscribers) -> {
+            if (subscribers == null) {
+                priceStore.release(tradeId);
+            }
+            return subscribers;
+        });
     }
 
-    private void startPriceGenerator(Set<String> subscribedTrades) {
-        // Simulate price ticks every 1000ms
-        Flux.interval(Duration.ofMillis(500))
+    /**
+     * Rebuilds the snapshot from the registry. Synchronized, so concurrent (un)subscribes can't
+     * publish their snapshots out of order and leave an older one in place.
+     */
+    private synchronized void refreshActiveTrades() {
+        activeOrdinals = subscriptions.keySet().stream()
+                .mapToInt(priceStore::temporaryOrdinal)
+                .toArray();
+    }
+
+    private synchronized void ensureEngineStarted() {
+        if (tickEngine != null && !tickEngine.isDisposed()) {
+            return;
+        }
+        tickEngine = Flux.interval(properties.getTickInterval(), engineScheduler)
                 .onBackpressureDrop(tick -> log.warn("Dropping price tick due to backpressure"))
-                .map(tick -> generatePriceUpdate(subscribedTrades))
-                .subscribe(
-                        update -> {
-                            /*Sinks.EmitResult result = priceSink.tryEmitNext(update);
-                            if (result.isFailure()) {
-                                log.warn("Failed to emit price update: {}", result);
-                            }*/
-                            Sinks.EmitResult result = priceSink.tryEmitNext(update);
-                            log.debug("mit price update: {}", update);
-                            while (result == Sinks.EmitResult.FAIL_OVERFLOW) {
-                                log.debug("Buffer full, retrying...");
-                                LockSupport.parkNanos(10_000_000); // 10ms
-                                result = priceSink.tryEmitNext(update);
-                            }
-                            if (result.isFailure()) {
-                                log.warn("Failed to emit price update: {}", result);
-                            }
-                        },
-                        error -> log.error("Price generation error", error)
-                );
-
-        log.info("Price tick generator started");
-    }
-
-    private PriceUpdate generatePriceUpdate(Set<String> subscribedTrades) {
-        // Randomly select a trade to update (simulating 100k trades)
-       // String tradeId = "TRD" + String.format("%06d", random.nextInt(100000) + 1);
-
-        int randomIndex = random.nextInt(subscribedTrades.size());
-        String tradeId = subscribedTrades.stream()
-                .skip(randomIndex)
-                .findFirst()
-                .orElseThrow();
-
-        // Get or initialize price state
-        PriceState state = priceCache.computeIfAbsent(tradeId, k ->
-                new PriceState(
-                        BigDecimal.valueOf(random.nextDouble() * 1000000),
-                        BigDecimal.valueOf(random.nextDouble() * 1050000),
-                        BigDecimal.valueOf(random.nextDouble() * 1000),
-                        BigDecimal.valueOf(random.nextDouble() * 100)
-                )
-        );
+                .subscribe(tick -> tick(), error -> log.error("Price generation error", error));
+        // Same single thread as the ticks, so conflation buffers need no locking
+        flushLoop = Flux.interval(properties.getConflationWindow(), engineScheduler)
+                .onBackpressureDrop()
+                .subscribe(tick -> flush(), error -> log.error("Price flush error", error));
+        log.info("Price tick engine started, interval: {}, conflation window: {}",
+                properties.getTickInterval(), properties.getConflationWindow());
+    }
+
+    private synchronized void stopEngineIfIdle() {
+        if (allSubscribers.isEmpty()) {
+            stopEngine();
+            log.info("Price tick engine idle, stopped");
+        }
+    }
+
+    private synchronized void stopEngine() {
+        if (tickEngine != null) {
+            tickEngine.dispose();
+            flushLoop.dispose();
+            tickEngine = null;
+            flushLoop = null;
+        }
+    }
+
+    public List<PriceStreamStats> getStreamStats() {
+        return allSubscribers.stream()
+                .map(PriceSubscriber::stats)
+                .toList();
+    }
+
+    private double queued() {
+        return allSubscribers.stream().mapToInt(PriceSubscriber::queued).sum();
+    }
+
+    private double pending() {
+        return allSubscribers.stream().mapToInt(PriceSubscriber::getPendingCount).sum();
+    }
+
+    private double maxLagMillis(String clientClass) {
+        return allSubscribers.stream()
+                .filter(subscriber -> subscriber.getSubscriberClass().name().equals(clientClass))
+                .mapToLong(PriceSubscriber::lagMillis)
+                .max()
+                .orElse(0);
+    }
+
+    void tick() {
+        // No tradeIds means every trade: with a wildcard subscriber, any ordinal of the store can tick
+        boolean everyTrade = !wildcardSubscribers.isEmpty();
+        int[] ordinals = activeOrdinals;
+        int range = everyTrade ? priceStore.size() : ordinals.length;
+        if (range == 0) {
+            return;
+        }
+
+        int count = Math.min(properties.getTicksPerInterval(), range);
+        int generated = 0;
+        for (int i = 0; i < count; i++) {
+            int ordinal = everyTrade ? random.nextInt(range) : ordinals[random.nextInt(range)];
+            String tradeId = priceStore.tradeId(ordinal);
+            Set<PriceSubscriber> subscribers = tradeId != null ? subscriptions.get(tradeId) : null;
+            if (tradeId == null || subscribers == null && !everyTrade) {
+                continue; // unsubscribed (and maybe released) since the snapshot was taken
+            }
+
+            PriceUpdate update = generatePriceUpdate(ordinal);
+            generated++;
+            if (subscribers != null) {
+                for (PriceSubscriber subscriber : subscribers) {
+                    subscriber.offer(update);
+                }
+            }
+            for (PriceSubscriber subscriber : wildcardSubscribers) {
+                subscriber.offer(update);
+            }
+        }
+        ticks.increment(generated);
+    }
+
+    void flush() {
+        for (PriceSubscriber subscriber : allSubscribers) {
+            Sinks.EmitResult result = subscriber.flush(sequence);
+            if (result.isFailure()) {
+                emitFailures.get(result).increment();
+                if (result == Sinks.EmitResult.FAIL_OVERFLOW && !subscriber.isDisconnected()) {
+                    // Retried on the next flush, conflated with whatever ticks arrive meanwhile
+                    overflowRetries.increment(subscriber.getPendingCount());
+                }
+            }
+        }
+    }
+
+    PriceUpdate generatePriceUpdate(int ordinal) {
+        // Initialize price state on first tick; all state is fixed-point, no BigDecimal on this path
+        if (!priceStore.isInitialized(ordinal)) {
+            priceStore.set(ordinal,
+                    PriceField.toFixed(random.nextDouble() * 1000000),
+                    PriceField.toFixed(random.nextDouble() * 1050000),
+                    PriceField.toFixed(random.nextDouble() * 1000),
+                    PriceField.toFixed(random.nextDouble() * 100));
+        }
 
         // Generate realistic price movement (mean-reverting random walk)
-        BigDecimal priceChange = BigDecimal.valueOf((random.nextDouble() - 0.5) * 10000);
-        BigDecimal newPnl = state.pnl.add(priceChange).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal newMtm = newPnl.multiply(BigDecimal.valueOf(1.05)).setScale(2, RoundingMode.HALF_UP);
+        long newPnl = priceStore.get(ordinal, PriceField.PNL) + PriceField.toFixed((random.nextDouble() - 0.5) * 10000);
+        long newMtm = Math.round(newPnl * 1.05);
 
         // Update Greeks slightly
-        BigDecimal newDelta = state.delta.add(BigDecimal.valueOf((random.nextDouble() - 0.5) * 10))
-                .setScale(2, RoundingMode.HALF_UP);
-        BigDecimal newGamma = state.gamma.add(BigDecimal.valueOf((random.nextDouble() - 0.5)))
-                .setScale(2, RoundingMode.HALF_UP);
+        long newDelta = priceStore.get(ordinal, PriceField.DELTA) + PriceField.toFixed((random.nextDouble() - 0.5) * 10);
+        long newGamma = priceStore.get(ordinal, PriceField.GAMMA) + PriceField.toFixed(random.nextDouble() - 0.5);
 
-        // Update cache
-        state.pnl = newPnl;
-        state.mtm = newMtm;
-        state.delta = newDelta;
-        state.gamma = newGamma;
+        priceStore.set(ordinal, newPnl, newMtm, newDelta, newGamma);
+        for (PriceTickListener listener : tickListeners) {
+            listener.onTick(ordinal, newPnl, newMtm, newDelta, newGamma);
+        }
 
         // Return delta update with only changed fields
-        return PriceUpdate.withGreeks(tradeId, newPnl, newMtm, newDelta, newGamma);
+        PriceUpdate update = PriceUpdate.of(priceStore.tradeId(ordinal), newPnl, newMtm, newDelta, newGamma);
+        update.setSequence(++sequence);
+        replayBuffer.add(update);
+        publishedSequence = sequence;
+        return update;
+    }
+
+    /**
+     * The resume point of the last update whose prices are in the store.
+     */
+    public String currentResumePoint() {
+        return resumePoint(publishedSequence);
+    }
+
+    /**
+     * What a client resumes a stream of this process from after {@code sequence}: an event id, or
+     * the priceSequence of a search.
+     */
+    public String resumePoint(long sequence) {
+        return epoch + ':' + sequence;
+    }
+
+    /**
+     * The sequence to resume after, or one past any sequence, so only current prices are sent,
+     * for a resume point of another process.
+     */
+    long resumeSequence(String resumePoint) {
+        int separator = resumePoint.lastIndexOf(':');
+        long resumeAfter;
+        try {
+            resumeAfter = Long.parseLong(resumePoint.substring(separator + 1).trim());
+        } catch (NumberFormatException e) {
+            resumeAfter = -1;
+        }
+        if (separator <= 0 || resumeAfter < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid price sequence: " + resumePoint);
+        }
+        return epoch.equals(resumePoint.substring(0, separator).trim()) ? resumeAfter : FROM_SNAPSHOT;
+    }
+
+    /**
+     * Copy of {@code response} with the live P&L, MTM, delta and gamma of its trades, in the
+     * columns it has, and the sequence they are consistent with: applying the stream's updates
+     * after it gives the current prices. Cached responses are left untouched.
+     */
+    public TradeSearchResponse withLivePrices(TradeSearchResponse response) {
+        // Read first: the prices read next are at least this recent, and later updates overwrite them
+        long consistentWith = publishedSequence;
+        List<TradeDocument> trades = response.getTrades() == null ? null : response.getTrades().stream()
+                .map(this::withLivePrices)
+                .toList();
+        return response.toBuilder()
+                .trades(trades)
+                .priceSequence(resumePoint(consistentWith))
+                .build();
+    }
+
+    private TradeDocument withLivePrices(TradeDocument trade) {
+        int ordinal = trade.getTradeId() != null ? priceStore.ordinalIfPresent(trade.getTradeId()) : -1;
+        if (ordinal < 0 || !priceStore.isInitialized(ordinal)) {
+            return trade;
+        }
+        TradeDocument live = trade.toBuilder().build();
+        if (trade.getPnl() != null) {
+            live.setPnl(PriceField.toDecimal(priceStore.get(ordinal, PriceField.PNL)));
+        }
+        if (trade.getMtm() != null) {
+            live.setMtm(PriceField.toDecimal(priceStore.get(ordinal, PriceField.MTM)));
+        }
+        if (trade.getDelta() != null) {
+            live.setDelta(PriceField.toDecimal(priceStore.get(ordinal, PriceField.DELTA)));
+        }
+        if (trade.getGamma() != null) {
+            live.setGamma(PriceField.toDecimal(priceStore.get(ordinal, PriceField.GAMMA)));
+        }
+        return live;
     }
 
+    @PreDestroy
     public void stopPriceGenerator() {
-        priceSink.tryEmitComplete();
+        stopEngine();
+        allSubscribers.forEach(PriceSubscriber::complete);
         log.info("Price tick generator stopped");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.PriceStreamProperties.OverflowPolicy;
+import com.trading.blotter.dto.PriceResync;
+import com.trading.blotter.dto.PriceStreamStats;
+import com.trading.blotter.dto.PriceUpdate;
+import io.micrometer.core.instrument.Counter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * One SSE client of the shared tick engine.
+ * Owns its own bounded queue so the engine never waits on a slow HTTP writer.
+ * Ticks are conflated per tradeId (latest wins) between flushes. What happens when the queue is
+ * full depends on the client class policy: the pending updates stay conflated until the next
+ * flush (CONFLATE), the oldest queued updates make room (DROP_OLDEST), or the stream ends with a
+ * {@link SlowConsumerException} (DISCONNECT). Either way the cost stays with this subscriber.
+ * <p>
+ * Once the client reports a viewport, only its visible trades are flushed every window. Ticks of
+ * the others are conflated aside and flushed at the viewport's off-screen refresh interval, or
+ * only when they scroll back into view, as one catch-up update carrying every field changed since.
+ * <p>
+ * The subscriber tracks how far the client is safely caught up: once a flush leaves nothing held
+ * back, every update of the stream up to the engine's sequence has been queued. The last update
+ * of such a flush carries that sequence as its resume point, the SSE event id.
+ */
+@Getter
+class PriceSubscriber {
+
+    /**
+     * Settings and meters shared by the subscribers of one client class.
+     */
+    record SubscriberClass(String name, OverflowPolicy overflowPolicy, int bufferSize, long retryAfterMillis,
+                           Counter dropped, Counter disconnects) {
+    }
+
+    /**
+     * Trades on screen (margin included), and how often the others are refreshed; 0 for never.
+     */
+    record Viewport(Set<String> visible, long offscreenRefreshNanos) {
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Instant connectedAt = Instant.now();
+    // Editable while the stream is open, see PriceStreamService#updateSubscription
+    private final Set<String> tradeIds = ConcurrentHashMap.newKeySet();
+    private final boolean wildcard;
+    private final SubscriberClass subscriberClass;
+    // Sequence the client reconnected from, -1 for a new stream
+    private final long resumeAfter;
+    private final Queue<PriceUpdate> queue;
+    private final Sinks.Many<PriceUpdate> sink;
+    // Ends the stream early: a SlowConsumerException for falling behind, or the error it is failed with
+    private final Sinks.One<PriceUpdate> disconnect = Sinks.one();
+
+    // Conflation window, engine thread only
+    private final Map<String, PriceUpdate> pending = new LinkedHashMap<>();
+    // Off-screen trades conflated until their next refresh or scroll-in, engine thread only
+    private final Map<String, PriceUpdate> offscreen = new LinkedHashMap<>();
+    private Viewport appliedViewport;
+    private long offscreenFlushedAt;
+    // Every update up to here has been queued, -1 until the engine has replayed what the stream missed
+    private long resumeSequence = -1;
+    // Resume point when the off-screen buffer last went from empty to holding updates
+    private long offscreenSince;
+
+    // Where the engine replays trades of this stream from, see PriceStreamService#register
+    @Setter(AccessLevel.PACKAGE)
+    private volatile long startSequence;
+
+    // Set by the control endpoint, picked up by the engine at the next flush; null shows every trade
+    @Setter(AccessLevel.PACKAGE)
+    private volatile Viewport viewport;
+
+    // Written by the engine thread only, read by monitoring
+    private volatile long offered;
+    private volatile long emitted;
+    private volatile long dropped;
+    private volatile int pendingCount;
+    private volatile int offscreenCount;
+    private volatile boolean disconnected;
+
+    // Whether the engine routes ticks to it; guarded by the subscriber's monitor
+    @Setter(AccessLevel.PACKAGE)
+    private boolean registered;
+    @Setter(AccessLevel.PACKAGE)
+    private boolean closed;
+
+    PriceSubscriber(Set<String> tradeIds, boolean wildcard, SubscriberClass subscriberClass, long resumeAfter) {
+        this.tradeIds.addAll(tradeIds);
+        this.wildcard = wildcard;
+        this.subscriberClass = subscriberClass;
+        this.resumeAfter = resumeAfter;
+        // Dropping the oldest polls from the engine thread too, so that queue takes two consumers
+        this.queue = subscriberClass.overflowPolicy() == OverflowPolicy.DROP_OLDEST ?
+                new ArrayBlockingQueue<>(subscriberClass.bufferSize()) :
+                Queues.<PriceUpdate>get(subscriberClass.bufferSize()).get();
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(queue);
+    }
+
+    // Called from the engine thread only
+    void offer(PriceUpdate update) {
+        hold(update.getTradeId(), update, PriceUpdate::merge);
+        offered++;
+    }
+
+    /**
+     * Queues an update the stream missed. Anything already held for the trade is newer.
+     * Called from the engine thread only.
+     */
+    void replay(PriceUpdate update) {
+        hold(update.getTradeId(), update, (newer, older) -> PriceUpdate.merge(older, newer));
+    }
+
+    /**
+     * Everything missed after {@code sequence} has been replayed: it is a safe resume point until
+     * the next complete flush. Called from the engine thread only.
+     */
+    void resumed(long sequence) {
+        resumeSequence = resumeSequence < 0 ? sequence : Math.min(resumeSequence, sequence);
+        if (!offscreen.isEmpty()) {
+            offscreenSince = Math.min(offscreenSince, sequence);
+        }
+    }
+
+    private void hold(String tradeId, PriceUpdate update,
+                      BiFunction<PriceUpdate, PriceUpdate, PriceUpdate> merger) {
+        Viewport current = appliedViewport;
+        if (current == null || current.visible().contains(tradeId)) {
+            pending.merge(tradeId, update, merger);
+            pendingCount = pending.size();
+        } else {
+            holdOffscreen(tradeId, update, merger);
+            offscreenCount = offscreen.size();
+        }
+    }
+
+    private void holdOffscreen(String tradeId, PriceUpdate update,
+                               BiFunction<PriceUpdate, PriceUpdate, PriceUpdate> merger) {
+        if (offscreen.isEmpty()) {
+            offscreenSince = Math.max(0, resumeSequence);
+        }
+        offscreen.merge(tradeId, update, merger);
+    }
+
+    /**
+     * Moves conflated updates into the subscriber queue. Never blocks: on overflow the client
+     * class policy decides what gives. Called from the engine thread only.
+     *
+     * @param sequence the engine's sequence, every update up to it has been offered
+     * @return the failure that stopped the flush, OK when nothing is left pending
+     */
+    Sinks.EmitResult flush(long sequence) {
+        if (disconnected) {
+            return Sinks.EmitResult.FAIL_CANCELLED;
+        }
+        applyViewport(System.nanoTime());
+        // Where the client is caught up once this flush completes; streams dropping updates never are
+        long resumePoint = resumeSequence < 0 || subscriberClass.overflowPolicy() == OverflowPolicy.DROP_OLDEST ? -1
+                : offscreen.isEmpty() ? sequence : Math.min(sequence, offscreenSince);
+        Sinks.EmitResult result = Sinks.EmitResult.OK;
+        Iterator<PriceUpdate> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            PriceUpdate update = iterator.next();
+            if (!iterator.hasNext() && resumePoint > 0) {
+                update = update.withResumeSequence(resumePoint);
+            }
+            result = sink.tryEmitNext(update);
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW
+                    && subscriberClass.overflowPolicy() == OverflowPolicy.DROP_OLDEST && queue.poll() != null) {
+                dropped++;
+                subscriberClass.dropped().increment();
+                result = sink.tryEmitNext(update);
+            }
+            if (result.isFailure()) {
+                break;
+            }
+            iterator.remove();
+            emitted++;
+        }
+        pendingCount = pending.size();
+        if (pending.isEmpty() && resumePoint >= 0) {
+            resumeSequence = resumePoint;
+        }
+
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW && subscriberClass.overflowPolicy() == OverflowPolicy.DISCONNECT) {
+            disconnect();
+        }
+        return result;
+    }
+
+    /**
+     * Moves updates between the visible and off-screen buffers after a viewport change, and
+     * releases the off-screen ones when their refresh is due. Engine thread only.
+     */
+    private void applyViewport(long now) {
+        Viewport requested = viewport;
+        if (requested != appliedViewport) {
+            appliedViewport = requested;
+            // Scrolled out: held back from now on, conflated with anything already held back
+            if (requested != null) {
+                Iterator<Map.Entry<String, PriceUpdate>> visible = pending.entrySet().iterator();
+                while (visible.hasNext()) {
+                    Map.Entry<String, PriceUpdate> entry = visible.next();
+                    if (!requested.visible().contains(entry.getKey())) {
+                        holdOffscreen(entry.getKey(), entry.getValue(), PriceUpdate::merge);
+                        visible.remove();
+                    }
+                }
+            }
+            // Scrolled in: caught up at this flush
+            Iterator<Map.Entry<String, PriceUpdate>> hidden = offscreen.entrySet().iterator();
+            while (hidden.hasNext()) {
+                Map.Entry<String, PriceUpdate> entry = hidden.next();
+                if (requested == null || requested.visible().contains(entry.getKey())) {
+                    catchUp(entry.getKey(), entry.getValue());
+                    hidden.remove();
+                }
+            }
+        }
+        if (appliedViewport != null && appliedViewport.offscreenRefreshNanos() > 0
+                && now - offscreenFlushedAt >= appliedViewport.offscreenRefreshNanos()) {
+            offscreen.forEach(this::catchUp);
+            offscreen.clear();
+            offscreenFlushedAt = now;
+        }
+        offscreenCount = offscreen.size();
+    }
+
+    private void catchUp(String tradeId, PriceUpdate held) {
+        // Held back updates are older than anything pending for the same trade
+        pending.merge(tradeId, held, (newer, older) -> PriceUpdate.merge(older, newer));
+    }
+
+    /**
+     * Errors the stream right away, without waiting for the queue to drain.
+     */
+    private void disconnect() {
+        disconnected = true;
+        subscriberClass.disconnects().increment();
+        disconnect.tryEmitError(new SlowConsumerException(PriceResync.builder()
+                .subscriberId(id)
+                .clientClass(subscriberClass.name())
+                .reason("slow-consumer")
+                .lagMillis(lagMillis())
+                .retryAfterMillis(subscriberClass.retryAfterMillis())
+                .build()));
+    }
+
+    /**
+     * Updates emitted but not yet taken by the HTTP writer.
+     */
+    int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Age of the oldest update the HTTP writer has not taken yet, 0 when it keeps up. Only reads
+     * the head of the queue, so it is safe from any thread.
+     */
+    long lagMillis() {
+        PriceUpdate oldest = queue.peek();
+        return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getTimestamp());
+    }
+
+    Flux<PriceUpdate> asFlux() {
+        return sink.asFlux().mergeWith(disconnect.asMono());
+    }
+
+    /**
+     * Ends the stream with {@code error}. Any thread.
+     */
+    void fail(Throwable error) {
+        disconnected = true;
+        disconnect.tryEmitError(error);
+    }
+
+    void complete() {
+        sink.tryEmitComplete();
+        disconnect.tryEmitEmpty();
+    }
+
+    PriceStreamStats stats() {
+        long emittedSnapshot = emitted;
+        return PriceStreamStats.builder()
+                .subscriberId(id)
+                .connectedAt(connectedAt)
+                .subscribedTrades(tradeIds.size())
+                .clientClass(subscriberClass.name())
+                .overflowPolicy(subscriberClass.overflowPolicy().name())
+                .offered(offered)
+                .emitted(emittedSnapshot)
+                .pending(pendingCount)
+                .offscreen(offscreenCount)
+                .visibleTrades(viewport != null ? viewport.visible().size() : tradeIds.size())
+                .queued(queued())
+                .dropped(dropped)
+                .lagMillis(lagMillis())
+                .conflationRatio(emittedSnapshot == 0 ? 0 : (double) offered / emittedSnapshot)
+                .build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.trading.blotter.service;
+
+/**
+ * Callback for every price change produced by the tick engine, after {@link PriceStateStore}
+ * has been updated. Invoked on the single engine thread, so implementations must be cheap.
+ */
+public interface PriceTickListener {
+
+    /**
+     * New fixed-point values of one trade, see {@link com.trading.blotter.model.PriceField}.
+     */
+    void onTick(int ordinal, long pnl, long mtm, long delta, long gamma);
+}
@@ -0,0 +1,255 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.PriceStreamProperties;
+import com.trading.blotter.dto.PriceStreamStats;
+import com.trading.blotter.dto.PriceUpdate;
+import com.trading.blotter.dto.PriceViewport;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.model.TradeDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Price streams following a search view instead of a list of tradeIds.
+ * <p>
+ * The view is a {@link TradeSearchRequest} filter, or the search behind a paging cursor. Its
+ * trades are resolved with a point-in-time scan of tradeIds only (doc values), then re-resolved
+ * in the background and after every ingest; only the difference is applied to the stream, which
+ * stays connected throughout. Refreshes of a stream may overlap, only the latest started is kept.
+ * A view that fails to resolve ends its stream with the error; the client reopens it, resuming
+ * from its last event id.
+ * <p>
+ * Viewports of view streams may be given as row ranges of the view; they are mapped to tradeIds
+ * here, and mapped again whenever the view's trades change.
+ */
+@Service
+@Slf4j
+public class PriceViewService {
+
+    private final PriceStreamService priceStreamService;
+    private final TradePagingService pagingService;
+    private final PriceStreamProperties.Views properties;
+
+    // Open view streams by stream id, with the trades last resolved for them in view order
+    private final Map<String, View> views = new ConcurrentHashMap<>();
+    // Orders refreshes by when they started
+    private final AtomicLong refreshes = new AtomicLong();
+    private Disposable refreshLoop;
+
+    // resolvedBy: the refresh the rows come from
+    private record View(TradeSearchRequest request, List<String> rows, PriceViewport viewport, long resolvedBy) {
+
+        View withViewport(PriceViewport viewport) {
+            return new View(request, rows, viewport, resolvedBy);
+        }
+    }
+
+    public PriceViewService(PriceStreamService priceStreamService, TradePagingService pagingService,
+                            PriceStreamProperties priceStreamProperties) {
+        this.priceStreamService = priceStreamService;
+        this.pagingService = pagingService;
+        this.properties = priceStreamProperties.getViews();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refreshLoop = Flux.interval(properties.getRefreshInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> refreshAll(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshLoop != null) {
+            refreshLoop.dispose();
+        }
+    }
+
+    public PriceStreamService.PriceStream openViewStream(TradeSearchRequest view, String clientClass) {
+        return openViewStream(view, clientClass, null);
+    }
+
+    /**
+     * A stream of the trades matching {@code view}, or the search of its cursor when it has one.
+     * Trades start flowing once the view is first resolved, caught up from {@code resumeFrom}
+     * when given.
+     */
+    public PriceStreamService.PriceStream openViewStream(TradeSearchRequest view, String clientClass,
+                                                         String resumeFrom) {
+        TradeSearchRequest request = view.getCursor() != null ? pagingService.cursorRequest(view.getCursor()) : view;
+        TradeSearchRequest membership = request.toBuilder()
+                .requestedFields(List.of("tradeId"))
+                .build();
+
+        PriceStreamService.PriceStream stream = priceStreamService.openStream(Set.of(), false, clientClass, resumeFrom);
+        String streamId = stream.id();
+        Flux<PriceUpdate> updates = stream.updates()
+                .doOnSubscribe(s -> {
+                    views.put(streamId, new View(membership, List.of(), null, 0));
+                    refresh(streamId).subscribe();
+                })
+                .doFinally(signal -> views.remove(streamId));
+        return new PriceStreamService.PriceStream(streamId, updates);
+    }
+
+    /**
+     * Re-resolves every open view, one at a time. Called after ingests.
+     */
+    public Mono<Void> refreshAll() {
+        return Flux.fromIterable(List.copyOf(views.keySet()))
+                .concatMap(this::refresh)
+                .then();
+    }
+
+    private Mono<Void> refresh(String streamId) {
+        View view = views.get(streamId);
+        if (view == null) {
+            return Mono.empty();
+        }
+        long refresh = refreshes.incrementAndGet();
+        return pagingService.scan(view.request())
+                .take(properties.getMaxTrades())
+                .map(TradeDocument::getTradeId)
+                .collect(Collectors.toCollection(LinkedHashSet::new))
+                .doOnNext(members -> apply(streamId, refresh, members))
+                .onErrorResume(error -> {
+                    log.warn("Failed to refresh the trades of view stream {}, closing it: {}", streamId, error.getMessage());
+                    views.remove(streamId);
+                    priceStreamService.failStream(streamId, new ResponseStatusException(
+                            HttpStatus.SERVICE_UNAVAILABLE, "Could not resolve the trades of the view", error));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Moves the stream to {@code members}, diffed against the rows it follows now. Runs inside the
+     * view's compute, so overlapping refreshes and viewport changes apply one at a time, and a
+     * refresh older than the one applied last is dropped.
+     */
+    private void apply(String streamId, long refresh, Set<String> members) {
+        List<String> rows = List.copyOf(members);
+        try {
+            views.computeIfPresent(streamId, (id, view) -> {
+                if (view.resolvedBy() > refresh) {
+                    return view;
+                }
+                Set<String> previous = new HashSet<>(view.rows());
+                Set<String> added = new HashSet<>(members);
+                added.removeAll(previous);
+                previous.removeAll(members);
+                View current = new View(view.request(), rows, view.viewport(), refresh);
+                if (added.isEmpty() && previous.isEmpty() && rows.equals(view.rows())) {
+                    return current;
+                }
+                priceStreamService.updateSubscription(streamId, added, previous);
+                // Rows moved: the same viewport now shows other trades
+                if (current.viewport() != null) {
+                    priceStreamService.setViewport(streamId, visible(current, current.viewport()),
+                            current.viewport().isOffscreenRefresh());
+                }
+                log.debug("View stream {} follows {} trades (+{} -{})", streamId, rows.size(), added.size(), previous.size());
+                return current;
+            });
+        } catch (ResponseStatusException e) {
+            // Closed while the view was resolved
+            views.remove(streamId);
+        }
+    }
+
+    /**
+     * Sets the viewport of an open stream. Row ranges and margins need a stream following a view;
+     * other streams take the visible tradeIds as given.
+     */
+    public PriceStreamStats setViewport(String streamId, PriceViewport viewport) {
+        boolean rowRange = viewport.getFromRow() != null || viewport.getToRow() != null;
+        if (rowRange == (viewport.getTradeIds() != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A viewport needs either tradeIds or fromRow and toRow");
+        }
+        if (rowRange && (viewport.getFromRow() == null || viewport.getToRow() == null
+                || viewport.getFromRow() < 0 || viewport.getToRow() < viewport.getFromRow())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid row range: " + viewport.getFromRow() + " to " + viewport.getToRow());
+        }
+        if (viewport.getMargin() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid margin: " + viewport.getMargin());
+        }
+
+        // Mapped to trades inside the view's compute, so a refresh can't move the rows meanwhile
+        List<PriceStreamStats> stats = new ArrayList<>(1);
+        View view = views.computeIfPresent(streamId, (id, v) -> {
+            stats.add(priceStreamService.setViewport(streamId, visible(v, viewport), viewport.isOffscreenRefresh()));
+            return v.withViewport(viewport);
+        });
+        if (view == null) {
+            if (rowRange) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Stream " + streamId + " doesn't follow a view, its viewport needs tradeIds");
+            }
+            return priceStreamService.setViewport(streamId, Set.copyOf(viewport.getTradeIds()),
+                    viewport.isOffscreenRefresh());
+        }
+        return stats.get(0);
+    }
+
+    /**
+     * Sends every trade of the stream at full rate again.
+     */
+    public PriceStreamStats clearViewport(String streamId) {
+        views.computeIfPresent(streamId, (id, v) -> v.withViewport(null));
+        return priceStreamService.setViewport(streamId, null, true);
+    }
+
+    /**
+     * The trades of the visible rows of {@code view}, margin included.
+     */
+    private static Set<String> visible(View view, PriceViewport viewport) {
+        List<String> rows = view.rows();
+        int margin = viewport.getMargin();
+        Set<String> visible = new HashSet<>();
+        if (viewport.getTradeIds() == null) {
+            addRows(rows, viewport.getFromRow() - margin, viewport.getToRow() + margin, visible);
+            return visible;
+        }
+        Map<String, Integer> rowOf = new HashMap<>();
+        if (margin > 0) {
+            for (int row = 0; row < rows.size(); row++) {
+                rowOf.put(rows.get(row), row);
+            }
+        }
+        for (String tradeId : viewport.getTradeIds()) {
+            visible.add(tradeId);
+            Integer row = rowOf.get(tradeId);
+            if (row != null) {
+                addRows(rows, row - margin, row + margin, visible);
+            }
+        }
+        return visible;
+    }
+
+    private static void addRows(List<String> rows, long from, long to, Set<String> visible) {
+        for (int row = (int) Math.max(0, from); row <= Math.min(rows.size() - 1, to); row++) {
+            visible.add(rows.get(row));
+        }
+    }
+}
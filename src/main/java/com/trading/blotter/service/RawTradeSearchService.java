@@ -0,0 +1,405 @@
+package com.trading.blotter.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.TrackHits;
+import co.elastic.clients.json.JsonpMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.dto.TradeSearchResponse;
+import com.trading.blotter.model.TradeDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Request;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search that copies the hits from the Elasticsearch response into the HTTP response without
+ * building a {@link TradeDocument} per hit.
+ * <p>
+ * The output is the same JSON as {@code /search}: trades carry every TradeDocument property in
+ * serialization order, absent ones as null, with decimals rendered the way the BigDecimal mapping
+ * would. Each hit's values are copied token by token into a reused scratch buffer and then written
+ * out in property order, so the per-hit cost is a parse and a copy instead of a map, an entity and
+ * a serialization. Point-in-time paging stays on the typed path.
+ */
+@Service
+@Slf4j
+public class RawTradeSearchService {
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final String TRADES_PREFIX = "{\"trades\":[";
+
+    private final ElasticsearchRestOperations restOperations;
+    private final TradeService tradeService;
+    private final FetchPlanService fetchPlanService;
+    private final SearchProperties searchProperties;
+    private final ObjectMapper objectMapper;
+    private final JsonpMapper jsonpMapper;
+    private final SearchMetrics searchMetrics;
+
+    // TradeDocument properties in the order Jackson writes them
+    private final List<byte[]> propertyNames = new ArrayList<>();
+    private final Map<String, Integer> propertyIndex = new HashMap<>();
+    private final List<Boolean> decimals = new ArrayList<>();
+    private final List<Boolean> suppressNulls = new ArrayList<>();
+    private final int tradeIdIndex;
+
+    public RawTradeSearchService(ElasticsearchRestOperations restOperations, TradeService tradeService,
+                                 FetchPlanService fetchPlanService, SearchProperties searchProperties,
+                                 ObjectMapper objectMapper, JsonpMapper jsonpMapper,
+                                 SearchMetrics searchMetrics) throws JsonProcessingException {
+        this.restOperations = restOperations;
+        this.tradeService = tradeService;
+        this.fetchPlanService = fetchPlanService;
+        this.searchProperties = searchProperties;
+        this.objectMapper = objectMapper;
+        this.jsonpMapper = jsonpMapper;
+        this.searchMetrics = searchMetrics;
+
+        JsonSerializer<Object> serializer = objectMapper.getSerializerProviderInstance()
+                .findValueSerializer(TradeDocument.class);
+        for (Iterator<PropertyWriter> it = serializer.properties(); it.hasNext(); ) {
+            PropertyWriter property = it.next();
+            propertyIndex.put(property.getName(), propertyNames.size());
+            propertyNames.add(quotedName(property.getName()));
+            decimals.add(BigDecimal.class.equals(property.getType().getRawClass()));
+            suppressNulls.add(property instanceof BeanPropertyWriter writer && writer.willSuppressNulls());
+        }
+        this.tradeIdIndex = propertyIndex.getOrDefault("tradeId", -1);
+
+        String empty = objectMapper.writeValueAsString(TradeSearchResponse.builder().trades(List.of()).build());
+        if (!empty.startsWith(TRADES_PREFIX)) {
+            throw new IllegalStateException("Raw search needs trades as the first TradeSearchResponse property: " + empty);
+        }
+    }
+
+    public Mono<DataBuffer> search(TradeSearchRequest request, DataBufferFactory bufferFactory) {
+        if (request.getCursor() != null || request.isPointInTime()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Point-in-time paging is not supported by raw search");
+        }
+        tradeService.validate(request);
+
+        long started = System.nanoTime();
+        Query filter = tradeService.filterQuery(request);
+        FetchPlanService.FetchPlan plan = fetchPlanService.plan(request.getRequestedFields());
+        SearchMetrics.Shape shape = SearchMetrics.shape(SearchMetrics.RAW, filter, plan.columns().size());
+
+        Request search = ElasticsearchRestOperations.json("POST",
+                "/" + String.join(",", tradeService.searchIndices(request).getIndexNames()) + "/_search",
+                searchBody(request, filter, plan));
+        // A pruned partition may have been deleted since membership was read
+        search.addParameter("ignore_unavailable", "true");
+        search.addParameter("allow_no_indices", "true");
+        search.addParameter("expand_wildcards", "open");
+        String routing = tradeService.searchRouting(request);
+        if (routing != null) {
+            search.addParameter("routing", routing);
+        }
+
+        return Mono.defer(() -> {
+                    long sent = System.nanoTime();
+                    return restOperations.performForBytes(search)
+                            .map(body -> write(body, request, bufferFactory, shape, System.nanoTime() - sent));
+                })
+                .doOnSuccess(buffer -> searchMetrics.search(shape, started))
+                .doOnError(error -> log.error("Raw search failed", error));
+    }
+
+    private String searchBody(TradeSearchRequest request, Query filter, FetchPlanService.FetchPlan plan) {
+        SearchRequest searchRequest = SearchRequest.of(s -> {
+            s.query(filter)
+                    .size(request.getPageSize())
+                    .sort(tradeService.sortOptions(request))
+                    .trackTotalHits(trackTotalHits(request));
+            fetchPlanService.apply(plan, s);
+            if (request.getSearchAfter() != null && request.getSearchAfter().length > 0) {
+                s.searchAfter(Arrays.stream(request.getSearchAfter()).map(RawTradeSearchService::fieldValue).toList());
+            }
+            return s;
+        });
+
+        StringWriter body = new StringWriter();
+        try (var generator = jsonpMapper.jsonProvider().createGenerator(body)) {
+            searchRequest.serialize(generator, jsonpMapper);
+        }
+        return body.toString();
+    }
+
+    private TrackHits trackTotalHits(TradeSearchRequest request) {
+        if (!request.isIncludeTotal()) {
+            return TrackHits.of(t -> t.enabled(false));
+        }
+        return request.isExactTotal() ?
+                TrackHits.of(t -> t.enabled(true)) :
+                TrackHits.of(t -> t.count(searchProperties.getTrackTotalHitsUpTo()));
+    }
+
+    private static FieldValue fieldValue(Object value) {
+        if (value == null) {
+            return FieldValue.NULL;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return FieldValue.of(((Number) value).longValue());
+        }
+        if (value instanceof Number number) {
+            return FieldValue.of(number.doubleValue());
+        }
+        if (value instanceof Boolean bool) {
+            return FieldValue.of(bool);
+        }
+        return FieldValue.of(value.toString());
+    }
+
+    private DataBuffer write(byte[] body, TradeSearchRequest request, DataBufferFactory bufferFactory,
+                             SearchMetrics.Shape shape, long roundTripNanos) {
+        long started = System.nanoTime();
+        DataBuffer buffer = bufferFactory.allocateBuffer(body.length);
+        try (OutputStream out = buffer.asOutputStream()) {
+            HitWriter hits = new HitWriter(out);
+            out.write(TRADES_PREFIX.getBytes(StandardCharsets.UTF_8));
+            hits.copy(body);
+
+            Object[] lastSearchAfter = hits.sortLength > 0 ?
+                    objectMapper.readValue(body, hits.sortOffset, hits.sortLength, Object[].class) : null;
+            TradeSearchResponse response = tradeService.withTotal(
+                    tradeService.toResponse(List.of(), hits.count, lastSearchAfter, request),
+                    hits.totalHits, hits.totalRelation, request);
+
+            // The rest of the envelope, after the (empty) trades array opened above
+            byte[] envelope = objectMapper.writeValueAsBytes(response);
+            out.write(envelope, TRADES_PREFIX.length(), envelope.length - TRADES_PREFIX.length());
+
+            searchMetrics.raw(shape, hits.took, roundTripNanos, System.nanoTime() - started);
+            return buffer;
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private byte[] quotedName(String name) {
+        try {
+            return (objectMapper.writeValueAsString(name) + ":").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reused for every hit of a response: the values of the current hit sit in the scratch buffer,
+     * one slice per TradeDocument property.
+     */
+    private class HitWriter {
+
+        private final OutputStream out;
+        private final Scratch scratch = new Scratch();
+        private final int[] starts = new int[propertyNames.size()];
+        private final int[] ends = new int[propertyNames.size()];
+
+        private int count;
+        private long took;
+        private long totalHits;
+        private TotalHitsRelation totalRelation = TotalHitsRelation.OFF;
+        private int sortOffset;
+        private int sortLength;
+
+        HitWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void copy(byte[] body) throws IOException {
+            try (JsonParser parser = objectMapper.createParser(body);
+                 JsonGenerator values = objectMapper.createGenerator(scratch)) {
+                values.setRootValueSeparator(null);
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Unexpected search response");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("hits".equals(name)) {
+                        copyHits(parser, values);
+                    } else if ("took".equals(name)) {
+                        took = parser.getLongValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+
+        private void copyHits(JsonParser parser, JsonGenerator values) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("total".equals(name)) {
+                    readTotal(parser);
+                } else if ("hits".equals(name)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        copyHit(parser, values);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void readTotal(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("value".equals(name)) {
+                    totalHits = parser.getLongValue();
+                } else if ("relation".equals(name)) {
+                    totalRelation = "eq".equals(parser.getText()) ?
+                            TotalHitsRelation.EQUAL_TO : TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void copyHit(JsonParser parser, JsonGenerator values) throws IOException {
+            scratch.reset();
+            Arrays.fill(ends, -1);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "_id" -> {
+                        if (tradeIdIndex >= 0) {
+                            copyValue(parser, values, tradeIdIndex);
+                        }
+                    }
+                    case "_source" -> copyProperties(parser, values, false);
+                    // docvalue_fields come back as arrays, the mapping reads the first value
+                    case "fields" -> copyProperties(parser, values, true);
+                    case "sort" -> {
+                        sortOffset = (int) parser.getTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        sortLength = (int) parser.getTokenLocation().getByteOffset() + 1 - sortOffset;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            writeHit();
+            count++;
+        }
+
+        private void copyProperties(JsonParser parser, JsonGenerator values, boolean firstOfArray) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer index = propertyIndex.get(parser.getCurrentName());
+                JsonToken token = parser.nextToken();
+                if (index == null) {
+                    parser.skipChildren();
+                } else if (firstOfArray && token == JsonToken.START_ARRAY) {
+                    if (parser.nextToken() != JsonToken.END_ARRAY) {
+                        copyValue(parser, values, index);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    copyValue(parser, values, index);
+                }
+            }
+        }
+
+        private void copyValue(JsonParser parser, JsonGenerator values, int index) throws IOException {
+            int start = scratch.size();
+            if (decimals.get(index) && parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+                writeDecimal(values, parser.getDoubleValue());
+            } else {
+                values.copyCurrentStructure(parser);
+            }
+            values.flush();
+            starts[index] = start;
+            ends[index] = scratch.size();
+        }
+
+        private void writeHit() throws IOException {
+            if (count > 0) {
+                out.write(',');
+            }
+            out.write('{');
+            boolean first = true;
+            for (int i = 0; i < ends.length; i++) {
+                if (ends[i] < 0 && suppressNulls.get(i)) {
+                    continue;
+                }
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(propertyNames.get(i));
+                if (ends[i] < 0) {
+                    out.write(NULL);
+                } else {
+                    out.write(scratch.buffer(), starts[i], ends[i] - starts[i]);
+                }
+            }
+            out.write('}');
+        }
+    }
+
+    /**
+     * The mapping converts a double to BigDecimal through its toString, so the two print alike
+     * except where Double.toString switches to an exponent (and for negative zero).
+     */
+    private static void writeDecimal(JsonGenerator values, double value) throws IOException {
+        double magnitude = Math.abs(value);
+        if (magnitude == 0 || magnitude >= 1e7 || magnitude < 1e-3) {
+            values.writeNumber(new BigDecimal(Double.toString(value)));
+        } else {
+            values.writeNumber(value);
+        }
+    }
+
+    private static class Scratch extends ByteArrayOutputStream {
+
+        Scratch() {
+            super(4096);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
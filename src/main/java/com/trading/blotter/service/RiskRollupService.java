@@ -0,0 +1,399 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.RiskRollupProperties;
+import com.trading.blotter.dto.RiskRollup;
+import com.trading.blotter.dto.TradeAggregationRequest;
+import com.trading.blotter.dto.TradeAggregationResponse;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.model.PriceField;
+import com.trading.blotter.model.TradeDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live P&L, MTM, Delta and Gamma totals per book, trader and counterparty.
+ * <p>
+ * Trades are registered once from Elasticsearch (their groups and starting values), after which
+ * every tick is applied as a delta against the value last counted for that trade, so a tick costs
+ * O(dimensions) whatever the number of trades. Totals are kept as fixed-point longs, so they never
+ * drift. Changed groups are published at most once per publish interval, and group membership is
+ * periodically checked against Elasticsearch and re-seeded when trades were added, moved or removed.
+ */
+@Service
+@Slf4j
+public class RiskRollupService implements PriceTickListener {
+
+    private static final List<String> DIMENSIONS = List.of("book", "trader", "counterparty");
+    private static final int DIMS = DIMENSIONS.size();
+    private static final int FIELDS = PriceField.count();
+    private static final int NONE = -1;
+    private static final int MAX_GROUPS_PER_PAGE = 1000;
+    private static final int SEED_BATCH = 1000;
+
+    private final RiskRollupProperties properties;
+    private final PriceStateStore priceStore;
+    private final PriceStreamService priceStreamService;
+    private final TradePagingService tradePagingService;
+    private final TradeAggregationService tradeAggregationService;
+
+    private final Rollup[] rollups = new Rollup[DIMS];
+
+    // Per trade ordinal, guarded by this: its group in each dimension and the values counted in the totals
+    private int[] groupsByOrdinal = new int[0];
+    private long[] valuesByOrdinal = new long[0];
+    private int[] seedGeneration = new int[0];
+    private int generation;
+
+    private final Sinks.Many<List<RiskRollup>> updates = Sinks.many().multicast().directBestEffort();
+    private final AtomicBoolean seeding = new AtomicBoolean();
+    private Disposable publishLoop;
+    private Disposable reconcileLoop;
+
+    // Lazy: the price engine calls back into this service as one of its tick listeners
+    public RiskRollupService(RiskRollupProperties properties, PriceStateStore priceStore,
+                             @Lazy PriceStreamService priceStreamService,
+                             TradePagingService tradePagingService, TradeAggregationService tradeAggregationService) {
+        this.properties = properties;
+        this.priceStore = priceStore;
+        this.priceStreamService = priceStreamService;
+        this.tradePagingService = tradePagingService;
+        this.tradeAggregationService = tradeAggregationService;
+        for (int d = 0; d < DIMS; d++) {
+            rollups[d] = new Rollup(DIMENSIONS.get(d));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("Risk rollups disabled");
+            return;
+        }
+        reseed().subscribe();
+        publishLoop = Flux.interval(properties.getPublishInterval())
+                .onBackpressureDrop()
+                .subscribe(tick -> publish(), error -> log.error("Risk rollup publish error", error));
+        reconcileLoop = Flux.interval(properties.getReconcileInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> reconcile(), 1)
+                .subscribe(tick -> { }, error -> log.error("Risk rollup reconcile error", error));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (publishLoop != null) {
+            publishLoop.dispose();
+            reconcileLoop.dispose();
+        }
+        updates.tryEmitComplete();
+    }
+
+    /**
+     * Current totals of one dimension, or of all dimensions when null.
+     */
+    public List<RiskRollup> snapshot(String dimension) {
+        List<RiskRollup> snapshot = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Rollup rollup : rollups) {
+                if (dimension == null || rollup.dimension.equals(dimension)) {
+                    for (int group = 0; group < rollup.keys.size(); group++) {
+                        if (rollup.counts[group] > 0) {
+                            snapshot.add(rollup.toDto(group, now));
+                        }
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Full snapshot first, then the groups that changed in each publish interval.
+     */
+    public Flux<List<RiskRollup>> getRollupStream() {
+        return updates.asFlux()
+                .startWith(Mono.fromSupplier(() -> snapshot(null)));
+    }
+
+    @Override
+    public void onTick(int ordinal, long pnl, long mtm, long delta, long gamma) {
+        synchronized (this) {
+            if (ordinal >= seedGeneration.length || groupsByOrdinal[ordinal * DIMS] == NONE) {
+                return; // not seeded yet, picked up with its live values by the next seed
+            }
+            int offset = ordinal * FIELDS;
+            long dPnl = pnl - valuesByOrdinal[offset + PriceField.PNL.ordinal()];
+            long dMtm = mtm - valuesByOrdinal[offset + PriceField.MTM.ordinal()];
+            long dDelta = delta - valuesByOrdinal[offset + PriceField.DELTA.ordinal()];
+            long dGamma = gamma - valuesByOrdinal[offset + PriceField.GAMMA.ordinal()];
+            storeValues(ordinal, pnl, mtm, delta, gamma);
+
+            for (int d = 0; d < DIMS; d++) {
+                rollups[d].add(groupsByOrdinal[ordinal * DIMS + d], dPnl, dMtm, dDelta, dGamma);
+            }
+        }
+    }
+
+    /**
+     * Walks every trade in Elasticsearch and (re-)registers it, then drops trades that have disappeared.
+     * Trades the engine has already priced keep their live values, the others start from their stored values.
+     */
+    public Mono<Void> reseed() {
+        if (!seeding.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+        TradeSearchRequest request = TradeSearchRequest.builder()
+                .requestedFields(List.of("tradeId", "book", "trader", "counterparty", "pnl", "mtm", "delta", "gamma"))
+                .build();
+        int seed;
+        synchronized (this) {
+            seed = ++generation;
+        }
+        long started = System.nanoTime();
+
+        return tradePagingService.scan(request)
+                .buffer(SEED_BATCH)
+                // Starting prices are written to the store on the engine thread, its only writer
+                .concatMap(trades -> priceStreamService.onEngine(() -> trades.forEach(trade -> register(trade, seed)))
+                        .thenReturn(trades.size()))
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> {
+                    int removed = removeStale(seed);
+                    log.info("Risk rollups seeded from {} trades ({} removed) in {} ms",
+                            count, removed, (System.nanoTime() - started) / 1_000_000);
+                })
+                .doOnError(error -> log.error("Risk rollup seeding failed", error))
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> seeding.set(false))
+                .then();
+    }
+
+    /**
+     * Engine thread, see {@link PriceStreamService#onEngine}.
+     */
+    private void register(TradeDocument trade, int seed) {
+        int ordinal = priceStore.ordinal(trade.getTradeId());
+        synchronized (this) {
+            ensureCapacity(ordinal + 1);
+            if (!priceStore.isInitialized(ordinal)) {
+                priceStore.set(ordinal, toFixed(trade.getPnl()), toFixed(trade.getMtm()),
+                        toFixed(trade.getDelta()), toFixed(trade.getGamma()));
+            }
+            long pnl = priceStore.get(ordinal, PriceField.PNL);
+            long mtm = priceStore.get(ordinal, PriceField.MTM);
+            long delta = priceStore.get(ordinal, PriceField.DELTA);
+            long gamma = priceStore.get(ordinal, PriceField.GAMMA);
+
+            String[] keys = {trade.getBook(), trade.getTrader(), trade.getCounterparty()};
+            boolean known = groupsByOrdinal[ordinal * DIMS] != NONE;
+            for (int d = 0; d < DIMS; d++) {
+                if (known) {
+                    rollups[d].remove(groupsByOrdinal[ordinal * DIMS + d], valuesByOrdinal, ordinal * FIELDS);
+                }
+                groupsByOrdinal[ordinal * DIMS + d] = rollups[d].group(keys[d]);
+            }
+            storeValues(ordinal, pnl, mtm, delta, gamma);
+            for (int d = 0; d < DIMS; d++) {
+                rollups[d].insert(groupsByOrdinal[ordinal * DIMS + d], valuesByOrdinal, ordinal * FIELDS);
+            }
+            seedGeneration[ordinal] = seed;
+        }
+    }
+
+    private synchronized int removeStale(int seed) {
+        int removed = 0;
+        for (int ordinal = 0; ordinal < seedGeneration.length; ordinal++) {
+            if (groupsByOrdinal[ordinal * DIMS] != NONE && seedGeneration[ordinal] != seed) {
+                for (int d = 0; d < DIMS; d++) {
+                    rollups[d].remove(groupsByOrdinal[ordinal * DIMS + d], valuesByOrdinal, ordinal * FIELDS);
+                    groupsByOrdinal[ordinal * DIMS + d] = NONE;
+                }
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Compares trade counts per group with Elasticsearch and re-seeds on any difference.
+     * Ticks are not written back to Elasticsearch, so only membership can be reconciled, not values.
+     */
+    private Mono<Void> reconcile() {
+        return Flux.fromIterable(DIMENSIONS)
+                .concatMap(dimension -> countsInElasticsearch(dimension)
+                        .map(counts -> !counts.equals(countsInRollup(dimension))))
+                .any(mismatch -> mismatch)
+                .flatMap(mismatch -> {
+                    if (!mismatch) {
+                        log.debug("Risk rollups reconciled with Elasticsearch");
+                        return Mono.<Void>empty();
+                    }
+                    log.warn("Risk rollups out of sync with Elasticsearch, re-seeding");
+                    return reseed();
+                })
+                .onErrorResume(error -> {
+                    log.warn("Risk rollup reconciliation failed: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Map<String, Integer>> countsInElasticsearch(String dimension) {
+        TradeAggregationRequest request = TradeAggregationRequest.builder()
+                .groupBy(List.of(dimension))
+                .size(MAX_GROUPS_PER_PAGE)
+                .build();
+        return tradeAggregationService.aggregate(request)
+                .expand(page -> page.getAfterKey() == null ? Mono.empty()
+                        : tradeAggregationService.aggregate(request.toBuilder().after(page.getAfterKey()).build()))
+                .flatMapIterable(TradeAggregationResponse::getGroups)
+                .collectMap(group -> keyOf(group.getKeys().get(dimension)), group -> (int) group.getCount());
+    }
+
+    private synchronized Map<String, Integer> countsInRollup(String dimension) {
+        Rollup rollup = rollups[DIMENSIONS.indexOf(dimension)];
+        Map<String, Integer> counts = new HashMap<>();
+        for (int group = 0; group < rollup.keys.size(); group++) {
+            if (rollup.counts[group] > 0) {
+                counts.put(rollup.keys.get(group), rollup.counts[group]);
+            }
+        }
+        return counts;
+    }
+
+    private void publish() {
+        if (updates.currentSubscriberCount() == 0) {
+            synchronized (this) {
+                for (Rollup rollup : rollups) {
+                    rollup.dirty.clear();
+                }
+            }
+            return;
+        }
+
+        List<RiskRollup> changed = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Rollup rollup : rollups) {
+                for (int group = rollup.dirty.nextSetBit(0); group >= 0; group = rollup.dirty.nextSetBit(group + 1)) {
+                    changed.add(rollup.toDto(group, now));
+                }
+                rollup.dirty.clear();
+            }
+        }
+        if (!changed.isEmpty()) {
+            updates.tryEmitNext(changed);
+        }
+    }
+
+    private void storeValues(int ordinal, long pnl, long mtm, long delta, long gamma) {
+        int offset = ordinal * FIELDS;
+        valuesByOrdinal[offset + PriceField.PNL.ordinal()] = pnl;
+        valuesByOrdinal[offset + PriceField.MTM.ordinal()] = mtm;
+        valuesByOrdinal[offset + PriceField.DELTA.ordinal()] = delta;
+        valuesByOrdinal[offset + PriceField.GAMMA.ordinal()] = gamma;
+    }
+
+    private void ensureCapacity(int ordinals) {
+        int capacity = seedGeneration.length;
+        if (ordinals <= capacity) {
+            return;
+        }
+        int grown = Math.max(ordinals, Math.max(1024, capacity * 2));
+        groupsByOrdinal = Arrays.copyOf(groupsByOrdinal, grown * DIMS);
+        Arrays.fill(groupsByOrdinal, capacity * DIMS, grown * DIMS, NONE);
+        valuesByOrdinal = Arrays.copyOf(valuesByOrdinal, grown * FIELDS);
+        seedGeneration = Arrays.copyOf(seedGeneration, grown);
+    }
+
+    private static long toFixed(BigDecimal value) {
+        return value != null ? PriceField.toFixed(value) : 0;
+    }
+
+    private static String keyOf(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    /**
+     * Totals of one dimension, one slot per distinct key. Slots are never reused, a group that
+     * loses all its trades simply drops out of snapshots.
+     */
+    private static final class Rollup {
+        private final String dimension;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        private long[] sums = new long[16 * FIELDS];
+        private int[] counts = new int[16];
+        private final BitSet dirty = new BitSet();
+
+        private Rollup(String dimension) {
+            this.dimension = dimension;
+        }
+
+        private int group(String key) {
+            String normalized = keyOf(key);
+            Integer group = index.get(normalized);
+            if (group != null) {
+                return group;
+            }
+            int created = keys.size();
+            keys.add(normalized);
+            index.put(normalized, created);
+            if (created >= counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+                sums = Arrays.copyOf(sums, counts.length * FIELDS);
+            }
+            return created;
+        }
+
+        private void add(int group, long pnl, long mtm, long delta, long gamma) {
+            int offset = group * FIELDS;
+            sums[offset + PriceField.PNL.ordinal()] += pnl;
+            sums[offset + PriceField.MTM.ordinal()] += mtm;
+            sums[offset + PriceField.DELTA.ordinal()] += delta;
+            sums[offset + PriceField.GAMMA.ordinal()] += gamma;
+            dirty.set(group);
+        }
+
+        private void insert(int group, long[] values, int offset) {
+            counts[group]++;
+            add(group, values[offset], values[offset + 1], values[offset + 2], values[offset + 3]);
+        }
+
+        private void remove(int group, long[] values, int offset) {
+            counts[group]--;
+            add(group, -values[offset], -values[offset + 1], -values[offset + 2], -values[offset + 3]);
+        }
+
+        private RiskRollup toDto(int group, long timestamp) {
+            int offset = group * FIELDS;
+            return RiskRollup.builder()
+                    .dimension(dimension)
+                    .key(keys.get(group))
+                    .tradeCount(counts[group])
+                    .pnl(PriceField.toDecimal(sums[offset + PriceField.PNL.ordinal()]))
+                    .mtm(PriceField.toDecimal(sums[offset + PriceField.MTM.ordinal()]))
+                    .delta(PriceField.toDecimal(sums[offset + PriceField.DELTA.ordinal()]))
+                    .gamma(PriceField.toDecimal(sums[offset + PriceField.GAMMA.ordinal()]))
+                    .timestamp(timestamp)
+                    .build();
+        }
+    }
+}
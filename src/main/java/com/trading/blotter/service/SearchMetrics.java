@@ -0,0 +1,222 @@
+package com.trading.blotter.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.http.TransportHttpClient;
+import co.elastic.clients.transport.instrumentation.Instrumentation;
+import co.elastic.clients.transport.instrumentation.NoopInstrumentation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase timers of trade searches, tagged by path (typed client or raw), projection size and filter
+ * shape:
+ * <ul>
+ *     <li>blotter.search: the whole search, request building to response</li>
+ *     <li>blotter.search.elasticsearch.took: time spent in Elasticsearch, as reported by took</li>
+ *     <li>blotter.search.elasticsearch.network: HTTP round trip minus took (network, queueing, HTTP)</li>
+ *     <li>blotter.search.elasticsearch.decode: typed client decoding of the response body</li>
+ *     <li>blotter.search.mapping: hits to TradeDocuments (typed), or hits copied to the response (raw)</li>
+ * </ul>
+ * The typed client phases come from the transport instrumentation and cover every search sent
+ * through Spring Data. Timers publish a handful of fixed buckets rather than a percentile
+ * histogram, and are looked up once per tag combination, so the cost per search is a few
+ * {@link System#nanoTime()} calls.
+ */
+@Component
+public class SearchMetrics implements Instrumentation {
+
+    public static final String TYPED = "typed";
+    public static final String RAW = "raw";
+
+    private static final String SEARCH_ENDPOINT = "es/search";
+    private static final Duration[] BUCKETS = {
+            Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25),
+            Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500),
+            Duration.ofSeconds(1), Duration.ofMillis(2500)
+    };
+
+    // When the typed client finished decoding the last response on this thread, see mapping()
+    private static final ThreadLocal<long[]> DECODED_AT = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Tags of one search: projection is "all", "none" (aggregations), "1-10", "11-50" or "51+"
+     * columns; filters are the filtered fields joined with "+", or "none".
+     */
+    public record Shape(String path, String projection, String filters) {
+    }
+
+    private record TimerKey(String name, Shape shape) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public SearchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static Shape shape(String path, Query query, int columns) {
+        return new Shape(path, projection(columns), filters(query));
+    }
+
+    /**
+     * The whole search, from {@code startedNanos}.
+     */
+    public void search(Shape shape, long startedNanos) {
+        timer("blotter.search", shape).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Typed path: the time since the client decoded the response, when it did so on this thread
+     * after {@code startedNanos}. Spring Data maps the hits on the thread completing the request,
+     * so this is the entity mapping of the current search.
+     */
+    public void mapping(Shape shape, long startedNanos) {
+        long[] decodedAt = DECODED_AT.get();
+        long decoded = decodedAt[0];
+        decodedAt[0] = 0;
+        if (decoded != 0 && decoded - startedNanos > 0) {
+            timer("blotter.search.mapping", shape).record(System.nanoTime() - decoded, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Raw path: Elasticsearch time, the rest of the round trip, and the copy of the hits.
+     */
+    public void raw(Shape shape, long tookMillis, long roundTripNanos, long copyNanos) {
+        elasticsearch(shape, tookMillis, roundTripNanos);
+        timer("blotter.search.mapping", shape).record(copyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void elasticsearch(Shape shape, long tookMillis, long roundTripNanos) {
+        long tookNanos = TimeUnit.MILLISECONDS.toNanos(tookMillis);
+        timer("blotter.search.elasticsearch.took", shape).record(tookNanos, TimeUnit.NANOSECONDS);
+        timer("blotter.search.elasticsearch.network", shape)
+                .record(Math.max(0, roundTripNanos - tookNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, Shape shape) {
+        return timers.computeIfAbsent(new TimerKey(name, shape), key -> Timer.builder(name)
+                .tag("path", shape.path())
+                .tag("projection", shape.projection())
+                .tag("filters", shape.filters())
+                .serviceLevelObjectives(BUCKETS)
+                .register(meterRegistry));
+    }
+
+    static String projection(int columns) {
+        if (columns == 0) {
+            return "all";
+        }
+        return columns <= 10 ? "1-10" : columns <= 50 ? "11-50" : "51+";
+    }
+
+    /**
+     * The fields filtered on, in name order, from the bool filters built by TradeService.
+     */
+    static String filters(Query query) {
+        TreeSet<String> fields = new TreeSet<>();
+        collectFields(query, fields);
+        return fields.isEmpty() ? "none" : String.join("+", fields);
+    }
+
+    private static void collectFields(Query query, TreeSet<String> fields) {
+        if (query == null) {
+            return;
+        }
+        if (query.isBool()) {
+            BoolQuery bool = query.bool();
+            for (List<Query> clauses : List.of(bool.must(), bool.filter(), bool.should(), bool.mustNot())) {
+                clauses.forEach(clause -> collectFields(clause, fields));
+            }
+        } else if (query.isTerm()) {
+            fields.add(query.term().field());
+        } else if (query.isTerms()) {
+            fields.add(query.terms().field());
+        } else if (query.isRange()) {
+            fields.add(query.range().field());
+        } else if (!query.isMatchAll()) {
+            fields.add(query._kind().jsonValue());
+        }
+    }
+
+    @Override
+    public <TRequest> Context newContext(TRequest request, Endpoint<TRequest, ?, ?> endpoint) {
+        if (request instanceof SearchRequest search && SEARCH_ENDPOINT.equals(endpoint.id())) {
+            return new SearchContext(shape(search));
+        }
+        return NoopInstrumentation.INSTANCE.newContext(request, endpoint);
+    }
+
+    private static Shape shape(SearchRequest search) {
+        if (Integer.valueOf(0).equals(search.size())) {
+            return new Shape(TYPED, "none", filters(search.query()));
+        }
+        int columns = !search.docvalueFields().isEmpty() ? search.docvalueFields().size() :
+                search.source() != null && search.source().isFilter() ? search.source().filter().includes().size() : 0;
+        return shape(TYPED, search.query(), columns);
+    }
+
+    /**
+     * One search through the typed client. The transport calls it from the request thread, then
+     * from the thread completing the HTTP request.
+     */
+    private final class SearchContext implements Context {
+
+        private final Shape shape;
+        private volatile long sentAt;
+        private volatile long receivedAt;
+
+        SearchContext(Shape shape) {
+            this.shape = shape;
+        }
+
+        @Override
+        public ThreadScope makeCurrent() {
+            return () -> {
+            };
+        }
+
+        @Override
+        public void beforeSendingHttpRequest(TransportHttpClient.Request httpRequest, TransportOptions options) {
+            sentAt = System.nanoTime();
+        }
+
+        @Override
+        public void afterReceivingHttpResponse(TransportHttpClient.Response httpResponse) {
+            receivedAt = System.nanoTime();
+        }
+
+        @Override
+        public <TResponse> void afterDecodingApiResponse(TResponse response) {
+            long decoded = System.nanoTime();
+            DECODED_AT.get()[0] = decoded;
+            if (sentAt == 0 || receivedAt == 0 || !(response instanceof ResponseBody<?> body)) {
+                return;
+            }
+            elasticsearch(shape, body.took(), receivedAt - sentAt);
+            timer("blotter.search.elasticsearch.decode", shape).record(decoded - receivedAt, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void recordException(Throwable throwable) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.dto.PriceResync;
+import lombok.Getter;
+
+/**
+ * Ends the price stream of a subscriber whose queue overflowed under the DISCONNECT policy.
+ */
+@Getter
+public class SlowConsumerException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final PriceResync resync;
+
+    SlowConsumerException(PriceResync resync) {
+        super("Price subscriber " + resync.getSubscriberId() + " fell behind by " + resync.getLagMillis() + " ms");
+        this.resync = resync;
+    }
+}
@@ -0,0 +1,214 @@
+package com.trading.blotter.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import com.trading.blotter.dto.TradeAggregationRequest;
+import com.trading.blotter.dto.TradeAggregationResponse;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.model.TradeDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHits;
+import org.springframework.data.elasticsearch.core.query.IndicesOptions;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Book/trader/counterparty level risk totals computed by Elasticsearch, so the grid never has to
+ * page every trade to the browser to sum P&L or Greeks.
+ * <p>
+ * Groups come from a composite aggregation over the requested dimensions, each carrying a stats
+ * sub-aggregation per metric. Large group sets are paged with the composite after key.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TradeAggregationService {
+
+    private static final String GROUPS = "groups";
+    private static final String MATURITY_BUCKET = "maturityBucket";
+
+    private static final List<String> METRICS = List.of(
+            "notional", "pnl", "mtm", "delta", "gamma", "vega", "theta");
+
+    // Keyword dimensions that can be grouped on directly
+    private static final List<String> TERMS_DIMENSIONS = List.of(
+            "book", "trader", "counterparty", "instrument", "status", "currency", "tradeType");
+
+    private static final Map<String, String> MATURITY_INTERVALS = Map.of(
+            "year", "1y",
+            "quarter", "1q",
+            "month", "1M");
+
+    private final ReactiveElasticsearchOperations elasticsearchTemplate;
+    private final TradeService tradeService;
+
+    public Mono<TradeAggregationResponse> aggregate(TradeAggregationRequest request) {
+        TradeSearchRequest filter = request.getFilter() != null ? request.getFilter() : new TradeSearchRequest();
+        List<String> groupBy = request.getGroupBy() != null ? request.getGroupBy() : List.of();
+        log.info("Aggregating trades by {} for book: {}", groupBy, filter.getBook());
+
+        var queryBuilder = NativeQuery.builder()
+                .withQuery(tradeService.filterQuery(filter))
+                .withMaxResults(0)
+                .withIndicesOptions(IndicesOptions.LENIENT_EXPAND_OPEN)
+                .withRoute(tradeService.searchRouting(filter));
+
+        if (groupBy.isEmpty()) {
+            // Grand totals only, no composite needed
+            queryBuilder.withTrackTotalHits(true);
+            metricAggregations().forEach(queryBuilder::withAggregation);
+        } else {
+            queryBuilder.withAggregation(GROUPS, compositeAggregation(request, groupBy));
+        }
+
+        return elasticsearchTemplate.searchForHits(queryBuilder.build(), TradeDocument.class,
+                        tradeService.searchIndices(filter))
+                .map(hits -> groupBy.isEmpty() ? totals(hits) : groups(hits, request.getSize()))
+                .doOnError(error -> log.error("Aggregation failed", error));
+    }
+
+    private Aggregation compositeAggregation(TradeAggregationRequest request, List<String> groupBy) {
+        List<Map<String, CompositeAggregationSource>> sources = groupBy.stream()
+                .map(dimension -> Map.of(dimension, source(dimension, request.getMaturityInterval())))
+                .toList();
+
+        return Aggregation.of(a -> a
+                .composite(c -> {
+                    c.sources(sources).size(request.getSize());
+                    if (request.getAfter() != null && !request.getAfter().isEmpty()) {
+                        request.getAfter().forEach((key, value) -> c.after(key, toFieldValue(value)));
+                    }
+                    return c;
+                })
+                .aggregations(metricAggregations()));
+    }
+
+    private static CompositeAggregationSource source(String dimension, String maturityInterval) {
+        if (MATURITY_BUCKET.equals(dimension)) {
+            String interval = MATURITY_INTERVALS.get(maturityInterval);
+            if (interval == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Unsupported maturity interval: " + maturityInterval);
+            }
+            return CompositeAggregationSource.of(s -> s.dateHistogram(d -> d
+                    .field("maturityDate")
+                    .calendarInterval(t -> t.time(interval))
+                    // Keyed by the month the bucket starts in, whatever the interval
+                    .format("yyyy-MM")
+                    .missingBucket(true)));
+        }
+        if (!TERMS_DIMENSIONS.contains(dimension)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported group-by dimension: " + dimension);
+        }
+        return CompositeAggregationSource.of(s -> s.terms(t -> t
+                .field(dimension)
+                .missingBucket(true)));
+    }
+
+    private static Map<String, Aggregation> metricAggregations() {
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+        METRICS.forEach(metric -> aggregations.put(metric, Aggregation.of(a -> a.stats(s -> s.field(metric)))));
+        return aggregations;
+    }
+
+    private static TradeAggregationResponse totals(ReactiveSearchHits<TradeDocument> hits) {
+        Map<String, Aggregate> aggregates = aggregates(hits);
+        TradeAggregationResponse.Group total = TradeAggregationResponse.Group.builder()
+                .keys(Map.of())
+                .count(hits.getTotalHits())
+                .metrics(metrics(aggregates))
+                .build();
+        return TradeAggregationResponse.builder()
+                .groups(List.of(total))
+                .build();
+    }
+
+    private static TradeAggregationResponse groups(ReactiveSearchHits<TradeDocument> hits, int size) {
+        CompositeAggregate composite = aggregates(hits).get(GROUPS).composite();
+        List<CompositeBucket> buckets = composite.buckets().array();
+
+        List<TradeAggregationResponse.Group> groups = buckets.stream()
+                .map(bucket -> TradeAggregationResponse.Group.builder()
+                        .keys(toObjects(bucket.key()))
+                        .count(bucket.docCount())
+                        .metrics(metrics(bucket.aggregations()))
+                        .build())
+                .toList();
+
+        // A short page means there is nothing after it
+        Map<String, Object> afterKey = buckets.size() >= size && composite.afterKey() != null
+                ? toObjects(composite.afterKey())
+                : null;
+
+        log.info("Aggregation returned {} groups, more: {}", groups.size(), afterKey != null);
+        return TradeAggregationResponse.builder()
+                .groups(groups)
+                .afterKey(afterKey)
+                .build();
+    }
+
+    private static Map<String, Aggregate> aggregates(ReactiveSearchHits<TradeDocument> hits) {
+        Map<String, Aggregate> aggregates = new LinkedHashMap<>();
+        if (hits.getAggregations() instanceof ElasticsearchAggregations aggregations) {
+            aggregations.aggregationsAsMap().forEach((name, aggregation) ->
+                    aggregates.put(name, aggregation.aggregation().getAggregate()));
+        }
+        return aggregates;
+    }
+
+    private static Map<String, TradeAggregationResponse.Stats> metrics(Map<String, Aggregate> aggregates) {
+        Map<String, TradeAggregationResponse.Stats> metrics = new LinkedHashMap<>();
+        for (String metric : METRICS) {
+            Aggregate aggregate = aggregates.get(metric);
+            if (aggregate != null && aggregate.isStats()) {
+                metrics.put(metric, toStats(aggregate.stats()));
+            }
+        }
+        return metrics;
+    }
+
+    private static TradeAggregationResponse.Stats toStats(StatsAggregate stats) {
+        // min/max are meaningless when no trade in the group has a value
+        boolean empty = stats.count() == 0;
+        return TradeAggregationResponse.Stats.builder()
+                .count(stats.count())
+                .sum(stats.sum())
+                .min(empty ? null : stats.min())
+                .max(empty ? null : stats.max())
+                .build();
+    }
+
+    private static Map<String, Object> toObjects(Map<String, FieldValue> values) {
+        Map<String, Object> objects = new LinkedHashMap<>();
+        values.forEach((key, value) -> objects.put(key, value.isNull() ? null : value._get()));
+        return objects;
+    }
+
+    private static FieldValue toFieldValue(Object value) {
+        if (value == null) {
+            return FieldValue.NULL;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return FieldValue.of(((Number) value).longValue());
+        }
+        if (value instanceof Number number) {
+            return FieldValue.of(number.doubleValue());
+        }
+        return FieldValue.of(value.toString());
+    }
+}
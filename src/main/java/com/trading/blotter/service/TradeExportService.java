@@ -0,0 +1,127 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.model.ColumnMetadata;
+import com.trading.blotter.model.TradeDocument;
+import com.trading.blotter.model.TradeFields;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Streams a whole search result as NDJSON or CSV, one row per trade, in the requested columns.
+ * Rows are encoded as the point-in-time walk produces them, so memory does not depend on the
+ * result size and a client disconnect stops the Elasticsearch walk.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TradeExportService {
+
+    private static final String ADDITIONAL_FIELDS_PATH = "additionalFields.";
+
+    private final TradePagingService tradePagingService;
+    private final ColumnMetadataService columnMetadataService;
+    private final ObjectMapper objectMapper;
+
+    @Getter
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+    }
+
+    public Flux<DataBuffer> export(TradeSearchRequest request, Format format, DataBufferFactory bufferFactory) {
+        List<String> columns = request.getRequestedFields() != null && !request.getRequestedFields().isEmpty()
+                ? request.getRequestedFields()
+                : columnMetadataService.getDefaultGTIDColumns().stream().map(ColumnMetadata::getFieldName).toList();
+
+        // Only fetch the exported columns; non-core columns live under additionalFields in _source
+        TradeSearchRequest scanRequest = request.toBuilder()
+                .requestedFields(columns.stream()
+                        .map(column -> TradeFields.isCore(column) ? column : ADDITIONAL_FIELDS_PATH + column)
+                        .toList())
+                .build();
+
+        log.info("Exporting trades as {} with {} columns, book: {}", format, columns.size(), request.getBook());
+        Flux<TradeDocument> trades = tradePagingService.scan(scanRequest);
+
+        return switch (format) {
+            case NDJSON -> trades.map(trade -> ndjsonRow(trade, columns, bufferFactory));
+            case CSV -> Flux.concat(
+                    Mono.fromSupplier(() -> bufferFactory.wrap(csvLine(columns).getBytes(StandardCharsets.UTF_8))),
+                    trades.map(trade -> csvRow(trade, columns, bufferFactory)));
+        };
+    }
+
+    private DataBuffer ndjsonRow(TradeDocument trade, List<String> columns, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(256);
+        try (OutputStream out = buffer.asOutputStream();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            for (String column : columns) {
+                generator.writeFieldName(column);
+                generator.writeObject(TradeFields.get(trade, column));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    private DataBuffer csvRow(TradeDocument trade, List<String> columns, DataBufferFactory bufferFactory) {
+        List<String> values = columns.stream()
+                .map(column -> format(TradeFields.get(trade, column)))
+                .toList();
+        return bufferFactory.wrap(csvLine(values).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        return value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+    }
+
+    private static String csvLine(List<String> values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String value = values.get(i);
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.append('\n').toString();
+    }
+}
@@ -0,0 +1,284 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trading.blotter.config.IndexProperties;
+import com.trading.blotter.model.TradeDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Request;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps trades to their time partition and date ranges to the partitions worth searching.
+ * <p>
+ * Partitions are named {@code trades-v<template version>-<period>} (e.g. trades-v1-2024.03) and
+ * all sit behind the {@code trades} alias, so unpruned reads keep working against the alias.
+ * Writes go straight to the partition of the trade's tradeDate, which is created with the alias
+ * on first use. Alias members that are not partitions of the current layout (a single legacy
+ * index, an older version) are always searched, since they may hold any date.
+ * <p>
+ * With routing by book the layout is {@code trades-v<version>.book[-<period>]}: documents are
+ * indexed with routing = book, so a search for one book only needs the shard holding it. A
+ * different name keeps routed and unrouted indices apart while migrating between them.
+ */
+@Component
+@Slf4j
+public class TradeIndexResolver {
+
+    private static final String UNDATED = "undated";
+    private static final String ALREADY_EXISTS = "resource_already_exists_exception";
+    // The alias name is taken by a concrete index, i.e. an install from before partitioning
+    private static final String INVALID_ALIAS_NAME = "invalid_alias_name_exception";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM");
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy");
+
+    private final ElasticsearchRestOperations restOperations;
+    private final ObjectMapper objectMapper;
+    private final IndexProperties properties;
+    private final String alias;
+    private final String base;
+
+    // Indices currently behind the alias, refreshed by maintenance and on partition creation
+    private volatile Set<String> members = Set.of();
+    private final Set<String> ensured = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public TradeIndexResolver(ElasticsearchRestOperations restOperations, ObjectMapper objectMapper,
+                              IndexProperties properties, ReactiveElasticsearchOperations elasticsearchTemplate) {
+        this(restOperations, objectMapper, properties,
+                elasticsearchTemplate.getIndexCoordinatesFor(TradeDocument.class).getIndexName());
+    }
+
+    TradeIndexResolver(ElasticsearchRestOperations restOperations, ObjectMapper objectMapper,
+                       IndexProperties properties, String alias) {
+        this.restOperations = restOperations;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.alias = alias;
+        this.base = alias + "-v" + IndexTemplateService.TEMPLATE_VERSION + (properties.isRouteByBook() ? ".book" : "");
+    }
+
+    public boolean isPartitioned() {
+        return properties.getPartitioning() != IndexProperties.Partitioning.NONE;
+    }
+
+    public boolean isRoutedByBook() {
+        return properties.isRouteByBook();
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * The single index of the unpartitioned layout, or the prefix of the partitions.
+     */
+    public String getBaseName() {
+        return base;
+    }
+
+    public String getPartitionPattern() {
+        return base + "-*";
+    }
+
+    /**
+     * Index a trade is written to: its partition, or the alias (write index) when unpartitioned.
+     */
+    public String writeIndex(LocalDate tradeDate) {
+        if (!isPartitioned()) {
+            return alias;
+        }
+        return base + "-" + (tradeDate != null ? formatter().format(tradeDate) : UNDATED);
+    }
+
+    /**
+     * Indices to search for a tradeDate range: the partitions overlapping it plus any alias member
+     * outside the partition layout. Falls back to the alias when the range is open or too wide.
+     */
+    public IndexCoordinates searchIndices(LocalDate from, LocalDate to) {
+        Set<String> current = members;
+        if (!isPartitioned() || from == null || to == null || from.isAfter(to) || current.isEmpty()) {
+            return IndexCoordinates.of(alias);
+        }
+
+        Set<String> overlapping = new HashSet<>();
+        for (LocalDate period = periodStart(from); !period.isAfter(to); period = nextPeriod(period)) {
+            if (overlapping.size() >= properties.getMaxPartitionsPerQuery()) {
+                return IndexCoordinates.of(alias);
+            }
+            overlapping.add(writeIndex(period));
+        }
+
+        List<String> selected = new ArrayList<>();
+        for (String index : current) {
+            if (!isPartition(index) || overlapping.contains(index)) {
+                selected.add(index);
+            }
+        }
+        // Nothing overlaps: let the date filter return the empty result
+        return selected.isEmpty() ? IndexCoordinates.of(alias) : IndexCoordinates.of(selected.toArray(new String[0]));
+    }
+
+    /**
+     * Routing for a search scoped to one book, or null to fan out. Only used while every index
+     * behind the alias is in the routed layout: an unrouted index not migrated yet spreads a book
+     * over all its shards.
+     */
+    public String searchRouting(String book) {
+        if (!isRoutedByBook() || book == null || book.isEmpty()) {
+            return null;
+        }
+        Set<String> current = members;
+        if (current.isEmpty() || !current.stream().allMatch(this::isCurrentLayout)) {
+            return null;
+        }
+        return book;
+    }
+
+    /**
+     * True for indices written by this layout: the unpartitioned index or one of the partitions.
+     */
+    public boolean isCurrentLayout(String index) {
+        return isPartitioned() ? isPartition(index) : index.equals(base);
+    }
+
+    /**
+     * Creates the missing partitions among the given write indices, with the alias attached.
+     */
+    public Mono<Void> ensurePartitions(Collection<String> indices) {
+        if (!isPartitioned()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(indices)
+                .filter(index -> !ensured.contains(index))
+                .distinct()
+                .concatMap(index -> {
+                    if (members.contains(index)) {
+                        ensured.add(index);
+                        return Mono.empty();
+                    }
+                    ObjectNode body = objectMapper.createObjectNode();
+                    body.putObject("aliases").putObject(alias);
+                    Request create = ElasticsearchRestOperations.json("PUT", "/" + index, body);
+                    create.addParameter("ignore", "400"); // checked below, only "already exists" is fine
+                    return restOperations.perform(create)
+                            .doOnNext(response -> {
+                                JsonNode error = response.path("error");
+                                String type = error.path("type").asText();
+                                if (INVALID_ALIAS_NAME.equals(type)) {
+                                    throw new IllegalStateException("Could not create partition " + index + ": "
+                                            + alias + " is still a concrete index from before partitioning; run with"
+                                            + " 'migrate-index' to move it behind the alias, or set"
+                                            + " blotter.index.partitioning=none until then");
+                                }
+                                if (!error.isMissingNode() && !ALREADY_EXISTS.equals(type)) {
+                                    throw new IllegalStateException("Could not create partition " + index + ": "
+                                            + error.path("reason").asText(error.toString()));
+                                }
+                                if (response.path("acknowledged").asBoolean()) {
+                                    log.info("Created partition {}", index);
+                                }
+                                ensured.add(index);
+                            });
+                })
+                .then(refreshMembership());
+    }
+
+    public Mono<Void> refreshMembership() {
+        Request get = new Request("GET", "/_alias/" + alias);
+        get.addParameter("ignore", "404");
+        return restOperations.perform(get)
+                .doOnNext(response -> {
+                    Set<String> indices = new HashSet<>();
+                    response.fields().forEachRemaining(field -> {
+                        if (field.getValue().has("aliases")) {
+                            indices.add(field.getKey());
+                        }
+                    });
+                    members = Set.copyOf(indices);
+                    ensured.retainAll(indices); // deleted partitions get re-created with the alias
+                })
+                .then();
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    public boolean isPartition(String index) {
+        return isPartitioned() && index.startsWith(base + "-");
+    }
+
+    /**
+     * Last day covered by a partition, null for the undated partition or other indices.
+     */
+    public LocalDate periodEnd(String index) {
+        if (!isPartition(index)) {
+            return null;
+        }
+        String suffix = index.substring(base.length() + 1);
+        try {
+            LocalDate start = switch (properties.getPartitioning()) {
+                case MONTH -> LocalDate.parse(suffix + ".01", DateTimeFormatter.ofPattern("yyyy.MM.dd"));
+                case YEAR -> LocalDate.of(Integer.parseInt(suffix), 1, 1);
+                case NONE -> null;
+            };
+            return start != null ? nextPeriod(start).minusDays(1) : null;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null; // undated
+        }
+    }
+
+    public LocalDate nextPeriod(LocalDate periodStart) {
+        return properties.getPartitioning() == IndexProperties.Partitioning.YEAR
+                ? periodStart.plusYears(1)
+                : periodStart.plusMonths(1);
+    }
+
+    /**
+     * Painless script for reindexing into this layout: gives each document the partition of its
+     * tradeDate, same naming as {@link #writeIndex(LocalDate)}, and its book as routing. Null when
+     * neither applies. tradeDate is stored as yyyy-MM-dd.
+     */
+    public String reindexScript() {
+        StringBuilder script = new StringBuilder();
+        if (isPartitioned()) {
+            String period = properties.getPartitioning() == IndexProperties.Partitioning.YEAR
+                    ? "d.substring(0, 4)"
+                    : "d.substring(0, 4) + '.' + d.substring(5, 7)";
+            script.append("String d = ctx._source.tradeDate; ")
+                    .append("ctx._index = '").append(base).append("-' + (d == null ? '")
+                    .append(UNDATED).append("' : ").append(period).append("); ");
+        }
+        if (isRoutedByBook()) {
+            script.append("ctx._routing = ctx._source.book;");
+        }
+        return script.isEmpty() ? null : script.toString().trim();
+    }
+
+    private LocalDate periodStart(LocalDate date) {
+        return properties.getPartitioning() == IndexProperties.Partitioning.YEAR
+                ? date.withDayOfYear(1)
+                : date.withDayOfMonth(1);
+    }
+
+    private DateTimeFormatter formatter() {
+        return properties.getPartitioning() == IndexProperties.Partitioning.YEAR ? YEAR_FORMAT : MONTH_FORMAT;
+    }
+}
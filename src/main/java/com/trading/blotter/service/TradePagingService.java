@@ -0,0 +1,253 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.dto.TradeSearchResponse;
+import com.trading.blotter.model.TradeDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Deep pagination sessions backed by an Elasticsearch point-in-time (PIT).
+ * <p>
+ * Every page of a session searches the same frozen view of the index, sorted with a tradeId
+ * tie-breaker, so scrolling never skips or repeats rows. The session state (PIT id, query,
+ * search_after) travels in an opaque cursor token, and the next page is fetched speculatively
+ * while the client renders the current one. Prefetched pages are bounded in count and approximate
+ * size, and dropped on a schedule once older than the keep-alive.
+ */
+@Service
+@Slf4j
+public class TradePagingService {
+
+    // Same bound as TradeSearchRequest.pageSize, which requests decoded from a cursor aren't validated against
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ReactiveElasticsearchOperations elasticsearchTemplate;
+    private final TradeService tradeService;
+    private final ObjectMapper objectMapper;
+    private final SearchProperties.Paging properties;
+
+    // Speculatively fetched pages keyed by the cursor that requests them
+    private final Map<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+    private final AtomicLong prefetchedWeight = new AtomicLong();
+    private Disposable evictionLoop;
+
+    record PageCursor(String pitId, TradeSearchRequest request) {
+    }
+
+    private record Page(TradeSearchResponse response, String pitId, PageCursor next) {
+    }
+
+    // weight: reserved for a full page up front, the page isn't fetched yet
+    private record Prefetch(Mono<TradeSearchResponse> page, long createdAtNanos, long weight) {
+    }
+
+    public TradePagingService(ReactiveElasticsearchOperations elasticsearchTemplate, TradeService tradeService,
+                              ObjectMapper objectMapper, SearchProperties searchProperties) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.tradeService = tradeService;
+        this.objectMapper = objectMapper;
+        this.properties = searchProperties.getPaging();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        evictionLoop = Flux.interval(properties.getPrefetchEvictionInterval())
+                .onBackpressureDrop()
+                .subscribe(tick -> evictStalePrefetches(), error -> log.error("Prefetch eviction error", error));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (evictionLoop != null) {
+            evictionLoop.dispose();
+        }
+    }
+
+    public Mono<TradeSearchResponse> page(TradeSearchRequest request) {
+        Mono<TradeSearchResponse> page = request.getCursor() != null
+                ? nextPage(request.getCursor())
+                : firstPage(request);
+        return page.doOnNext(response -> prefetch(response.getNextCursor()));
+    }
+
+    private Mono<TradeSearchResponse> firstPage(TradeSearchRequest request) {
+        TradeSearchRequest pageRequest = request.toBuilder()
+                .searchAfter(null)
+                .cursor(null)
+                .build();
+        return openPointInTime(pageRequest)
+                .flatMap(pitId -> fetch(new PageCursor(pitId, pageRequest)));
+    }
+
+    private Mono<TradeSearchResponse> nextPage(String token) {
+        Prefetch prefetch = prefetches.remove(token);
+        if (prefetch != null) {
+            prefetchedWeight.addAndGet(-prefetch.weight());
+            log.debug("Serving prefetched page");
+            return prefetch.page()
+                    .onErrorResume(error -> fetch(decode(token)));
+        }
+        return Mono.fromSupplier(() -> decode(token))
+                .flatMap(this::fetch);
+    }
+
+    /**
+     * Walks the full result set of a request on one point-in-time, page by page, as a stream of trades.
+     * Pages are only fetched as the subscriber demands rows, so memory stays bounded by one page
+     * whatever the result size, and cancelling stops the walk and releases the PIT.
+     */
+    public Flux<TradeDocument> scan(TradeSearchRequest request) {
+        TradeSearchRequest scanRequest = request.toBuilder()
+                .pageSize(properties.getScanPageSize())
+                .includeTotal(false)
+                .searchAfter(null)
+                .cursor(null)
+                .build();
+        AtomicReference<String> latestPitId = new AtomicReference<>();
+
+        return Flux.usingWhen(
+                openPointInTime(scanRequest).doOnNext(latestPitId::set),
+                pitId -> fetchPage(new PageCursor(pitId, scanRequest))
+                        .expand(page -> page.next() != null ? fetchPage(page.next()) : Mono.empty())
+                        .doOnNext(page -> latestPitId.set(page.pitId()))
+                        .concatMapIterable(page -> page.response().getTrades(), 1),
+                pitId -> closePointInTime(latestPitId.get()),
+                (pitId, error) -> closePointInTime(latestPitId.get()),
+                pitId -> closePointInTime(latestPitId.get()));
+    }
+
+    /**
+     * The search a cursor token pages through. Unreadable tokens are rejected with 400.
+     */
+    public TradeSearchRequest cursorRequest(String token) {
+        return decode(token).request();
+    }
+
+    private Mono<TradeSearchResponse> fetch(PageCursor cursor) {
+        return fetchPage(cursor)
+                .map(page -> {
+                    if (page.next() != null) {
+                        page.response().setNextCursor(encode(page.next()));
+                    } else {
+                        closePointInTime(page.pitId()).subscribe();
+                    }
+                    return page.response();
+                });
+    }
+
+    private Mono<Page> fetchPage(PageCursor cursor) {
+        TradeSearchRequest request = cursor.request();
+        var query = tradeService.queryBuilder(request)
+                .withPointInTime(new Query.PointInTime(cursor.pitId(), properties.getKeepAlive()))
+                .build();
+
+        return elasticsearchTemplate.searchForHits(query, TradeDocument.class)
+                .flatMap(hits -> hits.getSearchHits().collectList()
+                        .map(list -> {
+                            TradeSearchResponse response = tradeService.withTotal(
+                                    tradeService.toResponse(list, request), hits, request);
+                            // ES may hand back a new PIT id, always continue with the latest one
+                            String pitId = hits.getPointInTimeId() != null ? hits.getPointInTimeId() : cursor.pitId();
+                            PageCursor next = response.isHasMore()
+                                    ? new PageCursor(pitId, request.toBuilder()
+                                            .searchAfter(response.getLastSearchAfter())
+                                            .build())
+                                    : null;
+                            return new Page(response, pitId, next);
+                        }))
+                .doOnError(error -> log.error("Paged search failed", error));
+    }
+
+    private void prefetch(String nextCursor) {
+        if (!properties.isPrefetch() || nextCursor == null) {
+            return;
+        }
+        PageCursor cursor = decode(nextCursor);
+        long weight = TradeSearchCache.weigh(cursor.request(), cursor.request().getPageSize());
+        if (prefetches.size() >= properties.getMaxPrefetchedPages()
+                || prefetchedWeight.get() + weight > properties.getMaxPrefetchedWeightBytes()) {
+            return;
+        }
+
+        Mono<TradeSearchResponse> page = fetch(cursor).cache();
+        Prefetch prefetch = new Prefetch(page, System.nanoTime(), weight);
+        if (prefetches.putIfAbsent(nextCursor, prefetch) != null) {
+            return;
+        }
+        prefetchedWeight.addAndGet(weight);
+        page.subscribe(response -> { }, error -> log.debug("Prefetch failed, next page will be fetched on demand"));
+    }
+
+    private void evictStalePrefetches() {
+        long keepAliveNanos = properties.getKeepAlive().toNanos();
+        long now = System.nanoTime();
+        prefetches.forEach((token, prefetch) -> {
+            if (now - prefetch.createdAtNanos() > keepAliveNanos && prefetches.remove(token, prefetch)) {
+                prefetchedWeight.addAndGet(-prefetch.weight());
+            }
+        });
+    }
+
+    /**
+     * The PIT pins the time partitions overlapping the request, so every page is pruned too.
+     */
+    private Mono<String> openPointInTime(TradeSearchRequest request) {
+        return elasticsearchTemplate.openPointInTime(
+                tradeService.searchIndices(request), properties.getKeepAlive(), true);
+    }
+
+    private Mono<Void> closePointInTime(String pitId) {
+        if (pitId == null) {
+            return Mono.empty();
+        }
+        return elasticsearchTemplate.closePointInTime(pitId)
+                .doOnNext(closed -> log.debug("Closed point-in-time"))
+                .onErrorResume(error -> {
+                    log.warn("Failed to close point-in-time: {}", error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    String encode(PageCursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode paging cursor", e);
+        }
+    }
+
+    PageCursor decode(String token) {
+        PageCursor cursor;
+        try {
+            cursor = objectMapper.readValue(Base64.getUrlDecoder().decode(token), PageCursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid paging cursor");
+        }
+        if (cursor.request() == null || cursor.request().getPageSize() < 1
+                || cursor.request().getPageSize() > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid paging cursor");
+        }
+        return cursor;
+    }
+}
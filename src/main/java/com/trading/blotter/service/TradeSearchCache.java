@@ -0,0 +1,228 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.dto.TradeSearchResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of search pages in front of Elasticsearch.
+ * <p>
+ * Keyed by a canonical form of {@link TradeSearchRequest} (filters, sorted projection, sort,
+ * search_after, page size), so equivalent requests share an entry whatever the field order.
+ * Entries expire after a TTL and are evicted least-recently-used once either the entry count or
+ * the approximate retained size is exceeded. Writers must call {@link #invalidateAll()}; a search
+ * that started before it doesn't cache its page. Pages are copied in and out, so callers may
+ * modify what they get.
+ */
+@Component
+@Slf4j
+public class TradeSearchCache {
+
+    // Rough retained size of one field of one trade (key, boxed value, map entry)
+    private static final long BYTES_PER_FIELD = 48;
+    private static final int ALL_FIELDS = 400;
+
+    private final SearchProperties.Cache properties;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalWeight;
+    // Bumped by invalidateAll, guarded by entries
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry(TradeSearchResponse response, long weight, long expiresAtNanos) {
+    }
+
+    public TradeSearchCache(SearchProperties searchProperties, MeterRegistry meterRegistry) {
+        this.properties = searchProperties.getCache();
+
+        FunctionCounter.builder("blotter.search.cache.gets", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("blotter.search.cache.gets", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("blotter.search.cache.evictions", evictions, LongAdder::sum)
+                .register(meterRegistry);
+        Gauge.builder("blotter.search.cache.size", this, TradeSearchCache::size)
+                .register(meterRegistry);
+        Gauge.builder("blotter.search.cache.weight", this, TradeSearchCache::weight)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public TradeSearchResponse get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos() - System.nanoTime() > 0) {
+                hits.increment();
+                return copy(entry.response());
+            }
+            if (entry != null) {
+                remove(key, entry);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * To read before searching and pass to {@link #put}.
+     */
+    public long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Caches the page of a search started at {@code generation}, unless the cache was invalidated since.
+     */
+    public void put(String key, TradeSearchRequest request, TradeSearchResponse response, long generation) {
+        long weight = weigh(request, response);
+        if (weight > properties.getMaxWeightBytes()) {
+            return; // would evict everything else
+        }
+
+        Entry entry = new Entry(copy(response), weight, System.nanoTime() + properties.getTtl().toNanos());
+        synchronized (entries) {
+            if (generation != this.generation) {
+                return; // may predate a write
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalWeight -= previous.weight();
+            }
+            totalWeight += weight;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > properties.getMaxEntries() || totalWeight > properties.getMaxWeightBytes())
+                    && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                totalWeight -= evicted.weight();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached page. Called whenever trades are written or re-marked.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0;
+            generation++;
+        }
+        log.debug("Search cache invalidated");
+    }
+
+    /**
+     * Canonical cache key. Requested fields are sorted and de-duplicated so that column order
+     * in the grid does not fragment the cache. Every value is length-prefixed, so no filter value
+     * can pass for a separator and make two different requests share a key.
+     */
+    public static String keyOf(TradeSearchRequest request) {
+        List<String> fields = request.getRequestedFields() == null ? List.of() :
+                request.getRequestedFields().stream().distinct().sorted().toList();
+        StringBuilder key = new StringBuilder(128);
+        append(key, "book", request.getBook());
+        append(key, "from", Objects.toString(request.getTradeDateFrom(), null));
+        append(key, "to", Objects.toString(request.getTradeDateTo(), null));
+        append(key, "instrument", request.getInstrument());
+        append(key, "trader", request.getTrader());
+        append(key, "counterparty", request.getCounterparty());
+        append(key, "status", request.getStatus());
+        append(key, "fields", fields);
+        append(key, "sort", request.getSortField());
+        append(key, "order", normalize(request.getSortOrder()).toLowerCase());
+        append(key, "after", request.getSearchAfter() == null ? List.of() : Arrays.stream(request.getSearchAfter())
+                .map(String::valueOf)
+                .toList());
+        append(key, "size", String.valueOf(request.getPageSize()));
+        append(key, "total", request.isIncludeTotal() ? (request.isExactTotal() ? "exact" : "approx") : "none");
+        return key.toString();
+    }
+
+    private static void append(StringBuilder key, String name, String value) {
+        String normalized = normalize(value);
+        key.append(name).append('=').append(normalized.length()).append(':').append(normalized).append('|');
+    }
+
+    private static void append(StringBuilder key, String name, List<String> values) {
+        key.append(name).append('=').append(values.size()).append('[');
+        for (String value : values) {
+            String normalized = normalize(value);
+            key.append(normalized.length()).append(':').append(normalized);
+        }
+        key.append("]|");
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static TradeSearchResponse copy(TradeSearchResponse response) {
+        return response.toBuilder()
+                .trades(response.getTrades() == null ? null : response.getTrades().stream()
+                        .map(trade -> trade.toBuilder()
+                                .additionalFields(trade.getAdditionalFields() == null ? null
+                                        : new HashMap<>(trade.getAdditionalFields()))
+                                .build())
+                        .toList())
+                .lastSearchAfter(response.getLastSearchAfter() == null ? null : response.getLastSearchAfter().clone())
+                .build();
+    }
+
+    private static long weigh(TradeSearchRequest request, TradeSearchResponse response) {
+        return weigh(request, response.getTrades().size());
+    }
+
+    /**
+     * Approximate retained size of {@code trades} trades with the columns of {@code request}.
+     */
+    static long weigh(TradeSearchRequest request, int trades) {
+        int fieldsPerTrade = request.getRequestedFields() == null || request.getRequestedFields().isEmpty()
+                ? ALL_FIELDS : request.getRequestedFields().size();
+        return (long) trades * fieldsPerTrade * BYTES_PER_FIELD;
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        totalWeight -= entry.weight();
+        evictions.increment();
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private long weight() {
+        synchronized (entries) {
+            return totalWeight;
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.trading.blotter.service;
 
+import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import com.trading.blotter.config.SearchProperties;
 import com.trading.blotter.dto.TradeSearchRequest;
 import com.trading.blotter.dto.TradeSearchResponse;
 import com.trading.blotter.model.TradeDocument;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHits;
 import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndicesOptions;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -23,8 +30,16 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TradeService {
 
+    private static final String TIE_BREAKER_FIELD = "tradeId";
+    private static final String TRADE_DATE_FORMAT = "yyyy-MM-dd";
+
     //private final ReactiveElasticsearchTemplate elasticsearchTemplate;
     private final ReactiveElasticsearchOperations elasticsearchTemplate;
+    private final TradeSearchCache searchCache;
+    private final SearchProperties searchProperties;
+    private final TradeIndexResolver indexResolver;
+    private final FetchPlanService fetchPlanService;
+    private final SearchMetrics searchMetrics;
 
     public Mono<TradeSearchResponse> searchTrades(TradeSearchRequest request) {
         log.info("Searching trades - pageSize: {}, requestedFields: {}, searchAfter: {}",
@@ -32,44 +47,184 @@ public class TradeService {
                 request.getRequestedFields() != null ? request.getRequestedFields().size() : "all",
                 request.getSearchAfter() != null ? "present" : "null");
 
+        validate(request);
+
+        if (!searchCache.isEnabled()) {
+            return executeSearch(request);
+        }
+
+        String cacheKey = TradeSearchCache.keyOf(request);
+        TradeSearchResponse cached = searchCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Search cache hit for {}", cacheKey);
+            return Mono.just(cached);
+        }
+        long generation = searchCache.generation();
+        return executeSearch(request)
+                .doOnNext(response -> searchCache.put(cacheKey, request, response, generation));
+    }
+
+    /**
+     * Caps the page size and rejects unknown columns before anything is cached or sent.
+     */
+    void validate(TradeSearchRequest request) {
         // Validate pageSize to prevent excessive queries
         if (request.getPageSize() > 1000) {
             log.warn("PageSize {} exceeds maximum, limiting to 1000", request.getPageSize());
             request.setPageSize(1000);
         }
+        fetchPlanService.plan(request.getRequestedFields());
+    }
+
+    private Mono<TradeSearchResponse> executeSearch(TradeSearchRequest request) {
+        long started = System.nanoTime();
+        NativeQuery query = queryBuilder(request)
+                // A pruned partition may have been deleted since membership was read (not allowed with a PIT)
+                .withIndicesOptions(IndicesOptions.LENIENT_EXPAND_OPEN)
+                // One shard when the book is known and the indices are routed by book
+                .withRoute(searchRouting(request))
+                .build();
+        SearchMetrics.Shape shape = SearchMetrics.shape(SearchMetrics.TYPED, query.getQuery(),
+                fetchPlanService.plan(request.getRequestedFields()).columns().size());
 
-        NativeQuery query = buildQuery(request);
+        return elasticsearchTemplate.searchForHits(query, TradeDocument.class, searchIndices(request))
+                .flatMap(hits -> {
+                    searchMetrics.mapping(shape, started);
+                    return hits.getSearchHits().collectList()
+                            .map(list -> withTotal(toResponse(list, request), hits, request));
+                })
+                .doOnSuccess(response -> {
+                    searchMetrics.search(shape, started);
+                    log.info("Search completed, returned {} trades", response.getTrades().size());
+                })
+                .doOnError(error -> log.error("Search failed", error));
+    }
 
-        return elasticsearchTemplate.search(query, TradeDocument.class)
-                .collectList()
-                .map(hits -> {
-                    List<TradeDocument> trades = hits.stream()
-                            .map(SearchHit::getContent)
-                            .toList();
+    TradeSearchResponse toResponse(List<SearchHit<TradeDocument>> hits, TradeSearchRequest request) {
+        List<TradeDocument> trades = hits.stream()
+                .map(SearchHit::getContent)
+                .toList();
 
-                    Object[] lastSearchAfter = hits.isEmpty() ? null :
-                            hits.get(hits.size() - 1).getSortValues().toArray();
+        Object[] lastSearchAfter = hits.isEmpty() ? null :
+                hits.get(hits.size() - 1).getSortValues().toArray();
 
-                    // hasMore is true ONLY if we got a FULL page
-                    boolean hasMore = trades.size() >= request.getPageSize();
+        return toResponse(trades, trades.size(), lastSearchAfter, request);
+    }
 
-                    log.info("Returning {} trades, hasMore: {}, lastSearchAfter: {}",
-                            trades.size(),
-                            hasMore,
-                            lastSearchAfter != null ? "present" : "null");
+    /**
+     * Page response for {@code hits} trades; trades may be left empty by callers writing the rows themselves.
+     */
+    TradeSearchResponse toResponse(List<TradeDocument> trades, int hits, Object[] lastSearchAfter,
+                                   TradeSearchRequest request) {
+        // hasMore is true ONLY if we got a FULL page
+        boolean hasMore = hits >= request.getPageSize();
 
-                    return TradeSearchResponse.builder()
-                            .trades(trades)
-                            .totalCount(hits.size())
-                            .lastSearchAfter(lastSearchAfter)
-                            .hasMore(trades.size() >= request.getPageSize())
-                            .build();
-                })
-                .doOnSuccess(response -> log.info("Search completed, returned {} trades", response.getTotalCount()))
-                .doOnError(error -> log.error("Search failed", error));
+        log.info("Returning {} trades, hasMore: {}, lastSearchAfter: {}",
+                hits,
+                hasMore,
+                lastSearchAfter != null ? "present" : "null");
+
+        return TradeSearchResponse.builder()
+                .trades(trades)
+                .totalCount(hits)
+                .lastSearchAfter(lastSearchAfter)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Only the time partitions overlapping the requested tradeDate range.
+     */
+    IndexCoordinates searchIndices(TradeSearchRequest request) {
+        return indexResolver.searchIndices(request.getTradeDateFrom(), request.getTradeDateTo());
+    }
+
+    /**
+     * Routing value for the request, null when it has to fan out to every shard.
+     */
+    String searchRouting(TradeSearchRequest request) {
+        return indexResolver.searchRouting(request.getBook());
+    }
+
+    /**
+     * Replaces the page-size totalCount with the Elasticsearch total when the request asked for one.
+     */
+    TradeSearchResponse withTotal(TradeSearchResponse response, ReactiveSearchHits<TradeDocument> hits,
+                                  TradeSearchRequest request) {
+        return withTotal(response, hits.getTotalHits(), hits.getTotalHitsRelation(), request);
+    }
+
+    TradeSearchResponse withTotal(TradeSearchResponse response, long totalHits, TotalHitsRelation relation,
+                                  TradeSearchRequest request) {
+        if (request.isIncludeTotal() && relation != TotalHitsRelation.OFF) {
+            response.setTotalCount(totalHits);
+            response.setTotalRelation(relation == TotalHitsRelation.EQUAL_TO ? "eq" : "gte");
+        }
+        return response;
+    }
+
+    NativeQuery buildQuery(TradeSearchRequest request) {
+        return queryBuilder(request).build();
+    }
+
+    NativeQueryBuilder queryBuilder(TradeSearchRequest request) {
+        // Build native query
+        var nativeQueryBuilder = NativeQuery.builder()
+                .withQuery(filterQuery(request))
+                .withMaxResults(request.getPageSize());
+
+        // Counting hits is skipped unless asked for, it is the expensive part of a filtered page
+        if (!request.isIncludeTotal()) {
+            nativeQueryBuilder.withTrackTotalHits(false);
+        } else if (request.isExactTotal()) {
+            nativeQueryBuilder.withTrackTotalHits(true);
+        } else {
+            nativeQueryBuilder.withTrackTotalHitsUpTo(searchProperties.getTrackTotalHitsUpTo());
+        }
+
+        // CRITICAL: Field projection - only fetch requested fields, from doc values when possible
+        FetchPlanService.FetchPlan plan = fetchPlanService.plan(request.getRequestedFields());
+        fetchPlanService.apply(plan, nativeQueryBuilder);
+        if (!plan.columns().isEmpty()) {
+            log.debug("Applied {} projection for {} fields",
+                    plan.isDocValuesOnly() ? "doc value" : "source", plan.columns().size());
+        }
+
+        // Sorting
+        nativeQueryBuilder.withSort(sortOptions(request));
+
+        // Add search_after for deep pagination
+        if (request.getSearchAfter() != null && request.getSearchAfter().length > 0) {
+            nativeQueryBuilder.withSearchAfter(List.of(request.getSearchAfter()));
+            log.debug("Using search_after pagination");
+        }
+
+        return nativeQueryBuilder;
+    }
+
+    List<SortOptions> sortOptions(TradeSearchRequest request) {
+        SortOrder sortOrder = "asc".equalsIgnoreCase(request.getSortOrder()) ?
+                SortOrder.Asc : SortOrder.Desc;
+
+        List<SortOptions> sort = new ArrayList<>();
+        sort.add(SortOptions.of(s -> s.field(f -> f
+                .field(request.getSortField())
+                .order(sortOrder))));
+
+        // Tie-breaker: tradeId is unique, so search_after never skips or repeats rows sharing a sort value
+        if (!TIE_BREAKER_FIELD.equals(request.getSortField())) {
+            sort.add(SortOptions.of(s -> s.field(f -> f
+                    .field(TIE_BREAKER_FIELD)
+                    .order(sortOrder))));
+        }
+        return sort;
     }
 
-    private NativeQuery buildQuery(TradeSearchRequest request) {
+    /**
+     * The filter part of a search request (book, dates, instrument, trader, counterparty, status)
+     * as a bool query, shared by searches, exports and aggregations.
+     */
+    Query filterQuery(TradeSearchRequest request) {
         List<Query> mustClauses = new ArrayList<>();
 
         // Book filter
@@ -79,17 +234,15 @@ public class TradeService {
                     .value(request.getBook()))));
         }
 
-        // Trade date range filter
+        // Trade date range filter (inclusive, dates as stored: yyyy-MM-dd)
         if (request.getTradeDateFrom() != null || request.getTradeDateTo() != null) {
             mustClauses.add(Query.of(q -> q.range(r -> {
-                var range = r.field("tradeDate");
+                var range = r.field("tradeDate").format(TRADE_DATE_FORMAT);
                 if (request.getTradeDateFrom() != null) {
-                    // TODO: Enable date range filtering once date serialization is handled
-                    //range.gte(request.getTradeDateFrom().toString());
+                    range.gte(JsonData.of(request.getTradeDateFrom().toString()));
                 }
                 if (request.getTradeDateTo() != null) {
-                    // TODO: Enable date range filtering once date serialization is handled
-                    //range.lte(request.getTradeDateTo().toString());
+                    range.lte(JsonData.of(request.getTradeDateTo().toString()));
                 }
                 return range;
             })));
@@ -128,32 +281,6 @@ public class TradeService {
                 BoolQuery.of(b -> b.must(Query.of(q -> q.matchAll(m -> m)))) :
                 BoolQuery.of(b -> b.must(mustClauses));
 
-        // Build native query
-        var nativeQueryBuilder = NativeQuery.builder()
-                .withQuery(Query.of(q -> q.bool(boolQuery)))
-                .withMaxResults(request.getPageSize());
-
-        // CRITICAL: Field projection - only fetch requested fields
-        if (request.getRequestedFields() != null && !request.getRequestedFields().isEmpty()) {
-            String[] fields = request.getRequestedFields().toArray(new String[0]);
-            nativeQueryBuilder.withSourceFilter(new FetchSourceFilter(fields, null));
-            log.debug("Applied source filter for {} fields", fields.length);
-        }
-
-        // Sorting
-        SortOrder sortOrder = "asc".equalsIgnoreCase(request.getSortOrder()) ?
-                SortOrder.Asc : SortOrder.Desc;
-
-        nativeQueryBuilder.withSort(s -> s.field(f -> f
-                .field(request.getSortField())
-                .order(sortOrder)));
-
-        // Add search_after for deep pagination
-        if (request.getSearchAfter() != null && request.getSearchAfter().length > 0) {
-            nativeQueryBuilder.withSearchAfter(List.of(request.getSearchAfter()));
-            log.debug("Using search_after pagination");
-        }
-
-        return nativeQueryBuilder.build();
+        return Query.of(q -> q.bool(boolQuery));
     }
-}
\ No newline at end of file
+}
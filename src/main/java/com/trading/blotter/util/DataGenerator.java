@@ -1,28 +1,30 @@
 package com.trading.blotter.util;
 
+import com.trading.blotter.dto.IngestReport;
 import com.trading.blotter.model.TradeDocument;
-import com.trading.blotter.repository.TradeRepository;
+import com.trading.blotter.service.BulkIngestService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class DataGenerator implements CommandLineRunner {
 
-    private final TradeRepository tradeRepository;
-    private final Random random = new Random();
+    private final BulkIngestService bulkIngestService;
 
-    private static final String[] BOOKS = {
+    static final String[] BOOKS = {
             "EMEA_RATES", "US_RATES", "ASIA_RATES", "EMEA_FX", "US_FX"
     };
 
@@ -57,17 +59,26 @@ public class DataGenerator implements CommandLineRunner {
     private void generateTrades(int count) {
         log.info("Generating {} trades...", count);
 
-        Flux.range(1, count)
-                .map(this::createTrade)
-                .flatMap(tradeRepository::save)
-                .buffer(1000)
-                .doOnNext(batch -> log.info("Saved {} trades", batch.size()))
-                .blockLast();
+        // Trades are generated on all cores and loaded through _bulk
+        IngestReport report = bulkIngestService.ingestTrades(Flux.range(1, count)
+                        .parallel()
+                        .runOn(Schedulers.parallel())
+                        .map(DataGenerator::createTrade)
+                        .sequential())
+                .block();
 
-        log.info("Data generation complete!");
+        log.info("Data generation complete! {} trades at {} docs/s", report.getIndexed(),
+                Math.round(report.getDocsPerSecond()));
     }
 
-    private TradeDocument createTrade(int index) {
+    static TradeDocument createTrade(int index) {
+        return createTrade(index, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Same trade for the same index and state of {@code random}, e.g. seeded for repeatable runs.
+     */
+    static TradeDocument createTrade(int index, Random random) {
         String tradeId = String.format("TRD%06d", index);
         LocalDate tradeDate = LocalDate.now().minusDays(random.nextInt(365));
 
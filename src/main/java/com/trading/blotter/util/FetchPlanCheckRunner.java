@@ -0,0 +1,116 @@
+package com.trading.blotter.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.dto.TradeSearchResponse;
+import com.trading.blotter.model.TradeDocument;
+import com.trading.blotter.model.TradeFields;
+import com.trading.blotter.service.RawTradeSearchService;
+import com.trading.blotter.service.TradeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs one search per kind of fetch plan against the configured cluster and checks every hit
+ * comes back with its tradeId and requested columns: doc values only (no _source), a filtered
+ * _source, and the raw path. Run with the argument "check-fetch-plans"; fails startup on a
+ * mismatch. The in-memory stand-in doesn't replace this check.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FetchPlanCheckRunner implements CommandLineRunner {
+
+    // Core columns with doc values, fetched without _source
+    private static final List<String> DOC_VALUE_COLUMNS = List.of("tradeId", "book", "tradeDate", "notional", "status");
+    // An additional field forces a filtered _source
+    private static final List<String> SOURCE_COLUMNS = List.of("tradeId", "book", "field1");
+    private static final int PAGE_SIZE = 20;
+
+    private final TradeService tradeService;
+    private final RawTradeSearchService rawTradeSearchService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void run(String... args) throws IOException {
+        if (args.length > 0 && "check-fetch-plans".equals(args[0])) {
+            List<String> failures = new ArrayList<>();
+            checkTyped(DOC_VALUE_COLUMNS, failures);
+            checkTyped(SOURCE_COLUMNS, failures);
+            checkRaw(DOC_VALUE_COLUMNS, failures);
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("Fetch plan check failed: " + String.join("; ", failures));
+            }
+            log.info("Fetch plan check passed");
+        }
+    }
+
+    private void checkTyped(List<String> columns, List<String> failures) {
+        TradeSearchResponse response;
+        try {
+            response = tradeService.searchTrades(request(columns)).block();
+        } catch (RuntimeException e) {
+            failures.add(columns + ": " + e.getMessage());
+            return;
+        }
+        if (response == null || response.getTrades().isEmpty()) {
+            failures.add(columns + ": no trades, nothing checked");
+            return;
+        }
+        for (TradeDocument trade : response.getTrades()) {
+            for (String column : columns) {
+                Object value = TradeFields.isCore(column) ? TradeFields.get(trade, column)
+                        : trade.getAdditionalFields() != null ? trade.getAdditionalFields().get(column) : null;
+                if (value == null) {
+                    failures.add(columns + ": trade " + trade.getTradeId() + " has no " + column);
+                    return;
+                }
+            }
+        }
+        log.info("{} trades with {}: OK", response.getTrades().size(), columns);
+    }
+
+    private void checkRaw(List<String> columns, List<String> failures) throws IOException {
+        DataBuffer buffer;
+        try {
+            buffer = rawTradeSearchService.search(request(columns), DefaultDataBufferFactory.sharedInstance).block();
+        } catch (RuntimeException e) {
+            failures.add("raw " + columns + ": " + e.getMessage());
+            return;
+        }
+        JsonNode trades;
+        try (var body = buffer.asInputStream()) {
+            trades = objectMapper.readTree(body).path("trades");
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        if (trades.isEmpty()) {
+            failures.add("raw " + columns + ": no trades, nothing checked");
+            return;
+        }
+        for (JsonNode trade : trades) {
+            if (!trade.hasNonNull("tradeId")) {
+                failures.add("raw " + columns + ": a trade has no tradeId");
+                return;
+            }
+        }
+        log.info("{} raw trades with {}: OK", trades.size(), columns);
+    }
+
+    private static TradeSearchRequest request(List<String> columns) {
+        return TradeSearchRequest.builder()
+                .pageSize(PAGE_SIZE)
+                .requestedFields(columns)
+                .build();
+    }
+}
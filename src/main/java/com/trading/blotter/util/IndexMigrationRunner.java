@@ -0,0 +1,28 @@
+package com.trading.blotter.util;
+
+import com.trading.blotter.service.IndexTemplateService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reindexes the trades into an index built from the current template and moves the alias.
+ * Run with the argument "migrate-index" after a template version bump.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class IndexMigrationRunner implements CommandLineRunner {
+
+    private final IndexTemplateService indexTemplateService;
+
+    @Override
+    public void run(String... args) {
+        if (args.length > 0 && "migrate-index".equals(args[0])) {
+            log.info("Migrating trades index to template version {}", IndexTemplateService.TEMPLATE_VERSION);
+            indexTemplateService.migrate().block();
+            log.info("Index migration complete!");
+        }
+    }
+}
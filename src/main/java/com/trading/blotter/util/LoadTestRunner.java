@@ -0,0 +1,217 @@
+package com.trading.blotter.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.trading.blotter.dto.PriceStreamStats;
+import com.trading.blotter.service.PriceStreamService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Load test of the running app from inside its own JVM: SSE price subscribers and closed-loop
+ * search clients over HTTP, with latency distributions at the end.
+ * Run with the arguments "load-test [sseClients] [searchClients] [seconds]", against a real cluster
+ * or with the inmemory-es profile (built with -Pinmemory-es, see the pom).
+ * <p>
+ * Tick-to-client latency is the time between the engine stamping an update and the client decoding
+ * it, conflation window included; both sides read the same clock. Only price updates are measured,
+ * every update of a batch, not the control events around them. Conflated and pending updates
+ * come from the engine's per-subscriber counters. Searches go through the search cache unless
+ * blotter.search.cache.enabled is false.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LoadTestRunner implements CommandLineRunner {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<JsonNode>> PRICE_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final List<String> BLOTTER_COLUMNS = List.of(
+            "tradeId", "book", "tradeDate", "instrument", "trader", "notional", "pnl", "mtm", "status");
+    private static final int TRADE_UNIVERSE = 10_000;
+    private static final int TRADES_PER_SUBSCRIBER = 50;
+    private static final int PAGE_SIZE = 100;
+    // Clients connect one per step so thousands of handshakes don't land in the same millisecond
+    private static final Duration RAMP_STEP = Duration.ofMillis(2);
+
+    private final WebClient.Builder webClientBuilder;
+    private final PriceStreamService priceStreamService;
+    private final Environment environment;
+
+    private final LatencyHistogram tickLatency = new LatencyHistogram();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final LongAdder sseErrors = new LongAdder();
+    private final LongAdder searchErrors = new LongAdder();
+    private volatile boolean measuring;
+
+    @Override
+    public void run(String... args) {
+        if (args.length > 0 && "load-test".equals(args[0])) {
+            int sseClients = args.length > 1 ? Math.max(0, Integer.parseInt(args[1])) : 1000;
+            int searchClients = args.length > 2 ? Math.max(0, Integer.parseInt(args[2])) : 20;
+            Duration duration = Duration.ofSeconds(args.length > 3 ? Math.max(1, Integer.parseInt(args[3])) : 60);
+            loadTest(sseClients, searchClients, duration);
+        }
+    }
+
+    private void loadTest(int sseClients, int searchClients, Duration duration) {
+        int connections = Math.max(1, sseClients + searchClients);
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("load-test")
+                .maxConnections(connections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient client = webClientBuilder.clone()
+                .baseUrl("http://localhost:" + environment.getProperty("local.server.port", "8085"))
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+
+        Duration ramp = RAMP_STEP.multipliedBy(connections);
+        log.info("Load test: {} SSE clients, {} search clients, {} s after a {} ms ramp-up",
+                sseClients, searchClients, duration.toSeconds(), ramp.toMillis());
+
+        // The engine's counters are read just before the clients disconnect
+        Mono<List<PriceStreamStats>> end = Mono.delay(ramp.plus(duration))
+                .map(tick -> priceStreamService.getStreamStats())
+                .cache();
+        Mono.delay(ramp).subscribe(tick -> measuring = true);
+
+        Flux<Void> subscribers = Flux.range(0, sseClients)
+                .delayElements(RAMP_STEP)
+                .flatMap(i -> subscriber(client, end), Math.max(1, sseClients));
+        Flux<Void> searchers = Flux.range(0, searchClients)
+                .delayElements(RAMP_STEP)
+                .flatMap(i -> searcher(client, end), Math.max(1, searchClients));
+
+        Mono.when(subscribers, searchers, end).block();
+        measuring = false;
+        connectionProvider.dispose();
+
+        report(sseClients, searchClients, duration, end.block());
+    }
+
+    private Mono<Void> subscriber(WebClient client, Mono<?> end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String tradeIds = IntStream.range(0, TRADES_PER_SUBSCRIBER)
+                .mapToObj(i -> String.format("TRD%06d", 1 + random.nextInt(TRADE_UNIVERSE)))
+                .distinct()
+                .collect(Collectors.joining(","));
+
+        return client.get()
+                .uri(uri -> uri.path("/api/trades/prices/stream").queryParam("tradeIds", tradeIds).build())
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(PRICE_EVENT)
+                .doOnNext(event -> {
+                    if (!measuring || event.data() == null) {
+                        return;
+                    }
+                    if ("price-update".equals(event.event())) {
+                        recordTick(event.data());
+                    } else if ("price-batch".equals(event.event())) {
+                        event.data().path("updates").forEach(this::recordTick);
+                    }
+                })
+                .takeUntilOther(end)
+                .onErrorResume(error -> {
+                    sseErrors.increment();
+                    log.debug("SSE client failed: {}", error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void recordTick(JsonNode update) {
+        long stamped = update.path("timestamp").asLong();
+        tickLatency.record((System.currentTimeMillis() - stamped) * 1000);
+    }
+
+    private Mono<Void> searcher(WebClient client, Mono<?> end) {
+        return Mono.defer(() -> {
+                    long started = System.nanoTime();
+                    return client.post()
+                            .uri("/api/trades/search")
+                            .bodyValue(searchRequest())
+                            .retrieve()
+                            .toBodilessEntity()
+                            .doOnSuccess(response -> {
+                                if (measuring) {
+                                    searchLatency.record((System.nanoTime() - started) / 1000);
+                                }
+                            })
+                            .onErrorResume(error -> {
+                                searchErrors.increment();
+                                log.debug("Search failed: {}", error.getMessage());
+                                return Mono.empty();
+                            });
+                })
+                .repeat()
+                .takeUntilOther(end)
+                .then();
+    }
+
+    /**
+     * One book with the default grid columns, a date range on every other request.
+     */
+    private static Map<String, Object> searchRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("book", DataGenerator.BOOKS[random.nextInt(DataGenerator.BOOKS.length)]);
+        request.put("pageSize", PAGE_SIZE);
+        request.put("requestedFields", BLOTTER_COLUMNS);
+        if (random.nextBoolean()) {
+            LocalDate from = LocalDate.now().minusDays(random.nextInt(365));
+            request.put("tradeDateFrom", from.toString());
+            request.put("tradeDateTo", from.plusDays(30).toString());
+        }
+        return request;
+    }
+
+    private void report(int sseClients, int searchClients, Duration duration, List<PriceStreamStats> streams) {
+        double seconds = duration.toMillis() / 1000d;
+
+        long offered = streams.stream().mapToLong(PriceStreamStats::getOffered).sum();
+        long emitted = streams.stream().mapToLong(PriceStreamStats::getEmitted).sum();
+        long pending = streams.stream().mapToLong(PriceStreamStats::getPending).sum();
+        log.info("SSE: {} clients ({} errors), {} events, {} events/s", sseClients, sseErrors.sum(),
+                tickLatency.count(), Math.round(tickLatency.count() / seconds));
+        log.info("SSE tick-to-client latency: {}", distribution(tickLatency));
+        log.info("SSE engine: {} streams, {} ticks offered, {} emitted, {} conflated, {} still pending",
+                streams.size(), offered, emitted, Math.max(0, offered - emitted - pending), pending);
+
+        log.info("Search: {} clients ({} errors), {} requests, {} requests/s", searchClients, searchErrors.sum(),
+                searchLatency.count(), Math.round(searchLatency.count() / seconds));
+        log.info("Search latency: {}", distribution(searchLatency));
+    }
+
+    private static String distribution(LatencyHistogram histogram) {
+        return String.format("p50 %s ms, p99 %s ms, p999 %s ms, max %s ms, mean %s ms",
+                millis(histogram.percentile(0.50)), millis(histogram.percentile(0.99)),
+                millis(histogram.percentile(0.999)), millis(histogram.max()), millis((long) histogram.mean()));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000d);
+    }
+}
@@ -0,0 +1,152 @@
+package com.trading.blotter.util;
+
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trading.blotter.dto.FacetValue;
+import com.trading.blotter.model.TradeDocument;
+import com.trading.blotter.service.FacetService;
+import com.trading.blotter.service.TradeIndexResolver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares single-book search latency with and without routing on the same routed indices.
+ * Run with the arguments "benchmark-routing [queries] [reportFile]" after migrating to
+ * route-by-book; the percentiles and the gain of routing are logged, and written as JSON to
+ * {@code reportFile} when given, to attach to the change that enables routing.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RoutingBenchmarkRunner implements CommandLineRunner {
+
+    private static final int WARMUP_QUERIES = 50;
+    private static final int PAGE_SIZE = 100;
+    private static final String[] BLOTTER_COLUMNS = {
+            "tradeId", "book", "tradeDate", "instrument", "trader", "notional", "pnl", "mtm", "status"
+    };
+
+    private final ReactiveElasticsearchOperations elasticsearchTemplate;
+    private final TradeIndexResolver indexResolver;
+    private final FacetService facetService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void run(String... args) {
+        if (args.length > 0 && "benchmark-routing".equals(args[0])) {
+            int queries = args.length > 1 ? Math.max(1, Integer.parseInt(args[1])) : 1000;
+            benchmark(queries, args.length > 2 ? Path.of(args[2]) : null);
+        }
+    }
+
+    private void benchmark(int queries, Path reportFile) {
+        if (indexResolver.searchRouting("any") == null) {
+            log.warn("Trades are not routed by book: set blotter.index.route-by-book=true and run migrate-index first");
+            return;
+        }
+        List<String> books = facetService.refresh().block().getOrDefault("book", List.of()).stream()
+                .map(FacetValue::getValue)
+                .toList();
+        if (books.isEmpty()) {
+            log.warn("No trades to benchmark, generate some data first");
+            return;
+        }
+
+        log.info("Benchmarking {} single-book searches over {} books, with and without routing", queries, books.size());
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            search(books.get(i % books.size()), true);
+            search(books.get(i % books.size()), false);
+        }
+
+        long[] routed = new long[queries];
+        long[] fanOut = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            // Interleaved so both sides see the same cache and cluster conditions
+            String book = books.get(i % books.size());
+            routed[i] = search(book, true);
+            fanOut[i] = search(book, false);
+        }
+
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("queries", queries);
+        report.put("books", books.size());
+        ObjectNode routedReport = report("routed", routed, report);
+        ObjectNode fanOutReport = report("fan-out", fanOut, report);
+        double p50Gain = gain(fanOutReport.get("p50Ms").asDouble(), routedReport.get("p50Ms").asDouble());
+        double p99Gain = gain(fanOutReport.get("p99Ms").asDouble(), routedReport.get("p99Ms").asDouble());
+        report.put("p50GainPercent", p50Gain);
+        report.put("p99GainPercent", p99Gain);
+        log.info("Routing gain: p50 {}%, p99 {}%", String.format("%.1f", p50Gain), String.format("%.1f", p99Gain));
+
+        if (reportFile != null) {
+            try {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write " + reportFile, e);
+            }
+            log.info("Routing benchmark report written to {}", reportFile);
+        }
+    }
+
+    private long search(String book, boolean routed) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(Query.of(q -> q.term(t -> t.field("book").value(book))))
+                .withSort(s -> s.field(f -> f.field("tradeDate").order(SortOrder.Desc)))
+                .withSort(s -> s.field(f -> f.field("tradeId").order(SortOrder.Desc)))
+                .withSourceFilter(new FetchSourceFilter(BLOTTER_COLUMNS, null))
+                .withMaxResults(PAGE_SIZE)
+                .withTrackTotalHits(false)
+                .withRoute(routed ? book : null)
+                .build();
+
+        long started = System.nanoTime();
+        elasticsearchTemplate.search(query, TradeDocument.class, IndexCoordinates.of(indexResolver.getAlias()))
+                .then()
+                .block();
+        return System.nanoTime() - started;
+    }
+
+    private static ObjectNode report(String label, long[] latencies, ObjectNode report) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        log.info("{}: p50 {} ms, p99 {} ms, max {} ms, mean {} ms", label,
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+                millis(sorted[sorted.length - 1]), millis((long) Arrays.stream(sorted).average().orElse(0)));
+        ObjectNode side = report.putObject(label);
+        side.put("p50Ms", percentile(sorted, 0.50) / 1_000_000d);
+        side.put("p99Ms", percentile(sorted, 0.99) / 1_000_000d);
+        side.put("maxMs", sorted[sorted.length - 1] / 1_000_000d);
+        side.put("meanMs", Arrays.stream(sorted).average().orElse(0) / 1_000_000d);
+        return side;
+    }
+
+    /**
+     * Latency saved by routing, in percent of the fan-out latency.
+     */
+    private static double gain(double fanOutMs, double routedMs) {
+        return fanOutMs > 0 ? (fanOutMs - routedMs) * 100 / fanOutMs : 0;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000d);
+    }
+}
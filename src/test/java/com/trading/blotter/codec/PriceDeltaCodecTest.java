@@ -0,0 +1,94 @@
+package com.trading.blotter.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trading.blotter.dto.PriceUpdate;
+import com.trading.blotter.model.PriceField;
+import com.trading.blotter.service.ColumnMetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PriceDeltaCodecTest {
+
+    private final PriceDeltaCodec codec = new PriceDeltaCodec(new ColumnMetadataService(new ObjectMapper()));
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    @Test
+    void headerCarriesMagicVersionAndScale() {
+        assertArrayEquals(new byte[]{'P', 'D', PriceDeltaCodec.VERSION, PriceField.SCALE},
+                bytes(codec.header(bufferFactory)));
+    }
+
+    @Test
+    void roundTripsEveryField() {
+        PriceUpdate update = PriceUpdate.of("TRD000001", 123_456_789L, -987_654_321L, 0L, -1L);
+        update.setTimestamp(1_700_000_000_000L);
+
+        PriceUpdate decoded = codec.decode(ByteBuffer.wrap(bytes(codec.encode(update, bufferFactory))));
+
+        assertEquals("TRD000001", decoded.getTradeId());
+        assertEquals(update.getTimestamp(), decoded.getTimestamp());
+        assertEquals(PriceField.ALL_MASK, decoded.getChangedMask());
+        for (PriceField field : PriceField.values()) {
+            assertEquals(update.value(field), decoded.value(field), field.name());
+        }
+    }
+
+    @Test
+    void roundTripsExtremeValuesThroughZigzag() {
+        PriceUpdate update = PriceUpdate.of("T", Long.MAX_VALUE, Long.MIN_VALUE, 63L, -64L);
+
+        PriceUpdate decoded = codec.decode(ByteBuffer.wrap(bytes(codec.encode(update, bufferFactory))));
+
+        assertEquals(Long.MAX_VALUE, decoded.value(PriceField.PNL));
+        assertEquals(Long.MIN_VALUE, decoded.value(PriceField.MTM));
+        assertEquals(63L, decoded.value(PriceField.DELTA));
+        assertEquals(-64L, decoded.value(PriceField.GAMMA));
+    }
+
+    @Test
+    void sendsOnlyChangedFields() {
+        PriceUpdate update = PriceUpdate.builder()
+                .tradeId("TRD000002")
+                .changedMask(PriceField.MTM.getBit())
+                .mtm(-42L)
+                .timestamp(1L)
+                .build();
+
+        byte[] frame = bytes(codec.encode(update, bufferFactory));
+        PriceUpdate decoded = codec.decode(ByteBuffer.wrap(frame));
+
+        assertEquals(PriceField.MTM.getBit(), decoded.getChangedMask());
+        assertEquals(-42L, decoded.value(PriceField.MTM));
+        assertFalse(decoded.has(PriceField.PNL));
+        // id length, 9 id bytes, timestamp, mask (two bytes, MTM sits above ordinal 7), one small value
+        assertEquals(1 + 9 + 1 + 2 + 1, frame.length);
+    }
+
+    @Test
+    void decodesConsecutiveFramesOfABatch() {
+        PriceUpdate first = PriceUpdate.of("A", 1L, 2L, 3L, 4L);
+        PriceUpdate second = PriceUpdate.of("B\u00e9", -5L, -6L, -7L, -8L);
+
+        ByteBuffer frames = ByteBuffer.wrap(bytes(codec.encode(List.of(first, second), bufferFactory)));
+
+        assertEquals("A", codec.decode(frames).getTradeId());
+        PriceUpdate decoded = codec.decode(frames);
+        assertEquals("B\u00e9", decoded.getTradeId());
+        assertEquals(-8L, decoded.value(PriceField.GAMMA));
+        assertFalse(frames.hasRemaining());
+    }
+
+    private static byte[] bytes(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        return bytes;
+    }
+}
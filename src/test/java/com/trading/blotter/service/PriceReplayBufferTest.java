@@ -0,0 +1,72 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.dto.PriceUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceReplayBufferTest {
+
+    @Test
+    void emptyBufferCoversNothingAhead() {
+        PriceReplayBuffer buffer = new PriceReplayBuffer(8);
+
+        assertTrue(buffer.covers(0));
+        assertFalse(buffer.covers(1));
+    }
+
+    @Test
+    void replaysUpdatesAfterTheSequenceOldestFirst() {
+        PriceReplayBuffer buffer = new PriceReplayBuffer(8);
+        for (long sequence = 1; sequence <= 5; sequence++) {
+            buffer.add(update("T" + (sequence % 2), sequence));
+        }
+
+        assertEquals(List.of(3L, 4L, 5L), replay(buffer, 2, tradeId -> true));
+        assertEquals(List.of(3L, 5L), replay(buffer, 2, Set.of("T1")::contains));
+        assertEquals(List.of(), replay(buffer, 5, tradeId -> true));
+    }
+
+    @Test
+    void forgetsWhatTheRingHasOverwritten() {
+        PriceReplayBuffer buffer = new PriceReplayBuffer(4);
+        for (long sequence = 1; sequence <= 10; sequence++) {
+            buffer.add(update("T", sequence));
+        }
+
+        assertTrue(buffer.covers(6));
+        assertFalse(buffer.covers(5));
+        assertFalse(buffer.covers(11)); // from before a restart
+        assertEquals(List.of(7L, 8L, 9L, 10L), replay(buffer, 6, tradeId -> true));
+    }
+
+    @Test
+    void roundsCapacityUpToAPowerOfTwo() {
+        PriceReplayBuffer buffer = new PriceReplayBuffer(5);
+        for (long sequence = 1; sequence <= 20; sequence++) {
+            buffer.add(update("T", sequence));
+        }
+
+        assertTrue(buffer.covers(12));
+        assertEquals(List.of(13L, 14L, 15L, 16L, 17L, 18L, 19L, 20L), replay(buffer, 12, tradeId -> true));
+    }
+
+    private static List<Long> replay(PriceReplayBuffer buffer, long after, Predicate<String> tradeIds) {
+        List<Long> sequences = new ArrayList<>();
+        buffer.replay(after, tradeIds, update -> sequences.add(update.getSequence()));
+        return sequences;
+    }
+
+    private static PriceUpdate update(String tradeId, long sequence) {
+        PriceUpdate update = PriceUpdate.of(tradeId, sequence, sequence, 0, 0);
+        update.setSequence(sequence);
+        return update;
+    }
+}
@@ -0,0 +1,53 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.PriceStreamProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceStreamServiceTest {
+
+    private final PriceStreamService service = newService();
+
+    @Test
+    void resumesFromItsOwnResumePoints() {
+        String resumePoint = service.resumePoint(42);
+
+        assertTrue(resumePoint.endsWith(":42"));
+        assertEquals(42, service.resumeSequence(resumePoint));
+        assertEquals(0, service.resumeSequence(service.resumePoint(0)));
+    }
+
+    @Test
+    void resumePointsOfAnotherProcessGetCurrentPrices() {
+        String otherProcess = newService().resumePoint(42);
+
+        assertNotEquals(otherProcess, service.resumePoint(42));
+        assertEquals(Long.MAX_VALUE, service.resumeSequence(otherProcess));
+    }
+
+    @Test
+    void rejectsMalformedResumePoints() {
+        for (String resumePoint : List.of("42", ":42", "epoch:", "epoch:abc", "epoch:-1")) {
+            ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                    () -> service.resumeSequence(resumePoint));
+            assertEquals(HttpStatus.BAD_REQUEST, error.getStatusCode(), resumePoint);
+        }
+        assertThrows(ResponseStatusException.class,
+                () -> service.openStream(Set.of("T1"), false, null, "not-a-resume-point"));
+    }
+
+    private static PriceStreamService newService() {
+        return new PriceStreamService(new PriceStreamProperties(), new PriceStateStore(), List.of(),
+                new SimpleMeterRegistry());
+    }
+}
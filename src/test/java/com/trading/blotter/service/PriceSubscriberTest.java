@@ -0,0 +1,157 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.PriceStreamProperties.OverflowPolicy;
+import com.trading.blotter.dto.PriceUpdate;
+import com.trading.blotter.model.PriceField;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceSubscriberTest {
+
+    // Smallest queue Reactor hands out for a bounded size
+    private static final int BUFFER_SIZE = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void conflatesTicksOfATradeBetweenFlushes() {
+        PriceSubscriber subscriber = subscriber(OverflowPolicy.CONFLATE);
+        subscriber.offer(PriceUpdate.of("T1", 1, 1, 1, 1));
+        subscriber.offer(PriceUpdate.builder().tradeId("T1").changedMask(PriceField.PNL.getBit()).pnl(2).build());
+        subscriber.offer(PriceUpdate.of("T2", 5, 5, 5, 5));
+
+        assertEquals(Sinks.EmitResult.OK, subscriber.flush(3));
+        subscriber.complete();
+        List<PriceUpdate> emitted = subscriber.asFlux().collectList().block();
+
+        assertEquals(2, emitted.size());
+        PriceUpdate merged = emitted.get(0);
+        assertEquals("T1", merged.getTradeId());
+        assertEquals(PriceField.ALL_MASK, merged.getChangedMask());
+        assertEquals(2, merged.value(PriceField.PNL));
+        assertEquals(1, merged.value(PriceField.MTM));
+        assertEquals(3, subscriber.getOffered());
+        assertEquals(2, subscriber.getEmitted());
+    }
+
+    @Test
+    void conflateKeepsOverflowPendingForTheNextFlush() {
+        PriceSubscriber subscriber = subscriber(OverflowPolicy.CONFLATE);
+        StalledClient client = StalledClient.of(subscriber);
+        offerTrades(subscriber, BUFFER_SIZE + 2);
+
+        assertEquals(Sinks.EmitResult.FAIL_OVERFLOW, subscriber.flush(1));
+        assertEquals(BUFFER_SIZE, subscriber.queued());
+        assertEquals(2, subscriber.getPendingCount());
+
+        // A new tick of a pending trade conflates instead of growing the backlog
+        subscriber.offer(PriceUpdate.of("T" + (BUFFER_SIZE + 1), 9, 9, 9, 9));
+        assertEquals(2, subscriber.getPendingCount());
+        assertFalse(subscriber.isDisconnected());
+
+        // Delivered once the client catches up
+        assertEquals(BUFFER_SIZE, client.readAll().size());
+        assertEquals(Sinks.EmitResult.OK, subscriber.flush(2));
+        assertEquals(BUFFER_SIZE + 2, client.readAll().size());
+    }
+
+    @Test
+    void dropOldestMakesRoomForNewUpdates() {
+        PriceSubscriber subscriber = subscriber(OverflowPolicy.DROP_OLDEST);
+        StalledClient client = StalledClient.of(subscriber);
+        offerTrades(subscriber, BUFFER_SIZE + 2);
+
+        assertEquals(Sinks.EmitResult.OK, subscriber.flush(1));
+        assertEquals(BUFFER_SIZE, subscriber.queued());
+        assertEquals(0, subscriber.getPendingCount());
+        assertEquals(2, subscriber.getDropped());
+
+        List<PriceUpdate> emitted = client.readAll();
+        assertEquals("T2", emitted.get(0).getTradeId());
+        assertEquals("T" + (BUFFER_SIZE + 1), emitted.get(BUFFER_SIZE - 1).getTradeId());
+    }
+
+    @Test
+    void disconnectEndsTheStreamWithASlowConsumerError() {
+        PriceSubscriber subscriber = subscriber(OverflowPolicy.DISCONNECT);
+        StalledClient.of(subscriber);
+        offerTrades(subscriber, BUFFER_SIZE + 1);
+
+        assertEquals(Sinks.EmitResult.FAIL_OVERFLOW, subscriber.flush(1));
+        assertTrue(subscriber.isDisconnected());
+        assertEquals(Sinks.EmitResult.FAIL_CANCELLED, subscriber.flush(2));
+
+        SlowConsumerException error = assertThrows(SlowConsumerException.class,
+                () -> subscriber.getDisconnect().asMono().block());
+        assertEquals(subscriber.getId(), error.getResync().getSubscriberId());
+        assertEquals("slow-consumer", error.getResync().getReason());
+    }
+
+    @Test
+    void lastUpdateOfACompleteFlushCarriesTheResumePoint() {
+        PriceSubscriber subscriber = subscriber(OverflowPolicy.CONFLATE);
+        subscriber.resumed(10);
+        subscriber.offer(PriceUpdate.of("T1", 1, 1, 1, 1));
+        subscriber.offer(PriceUpdate.of("T2", 1, 1, 1, 1));
+
+        subscriber.flush(12);
+        subscriber.complete();
+        List<PriceUpdate> emitted = subscriber.asFlux().collectList().block();
+
+        assertEquals(0, emitted.get(0).getResumeSequence());
+        assertEquals(12, emitted.get(1).getResumeSequence());
+    }
+
+    private PriceSubscriber subscriber(OverflowPolicy policy) {
+        PriceSubscriber.SubscriberClass subscriberClass = new PriceSubscriber.SubscriberClass("test", policy,
+                BUFFER_SIZE, 1000, meterRegistry.counter("dropped"), meterRegistry.counter("disconnects"));
+        return new PriceSubscriber(Set.of(), true, subscriberClass, -1);
+    }
+
+    /**
+     * A client that takes nothing until read, so the subscriber's own queue fills up.
+     */
+    private static final class StalledClient extends BaseSubscriber<PriceUpdate> {
+
+        private final List<PriceUpdate> received = new ArrayList<>();
+
+        static StalledClient of(PriceSubscriber subscriber) {
+            StalledClient client = new StalledClient();
+            subscriber.getSink().asFlux().subscribe(client);
+            return client;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // no demand until read
+        }
+
+        @Override
+        protected void hookOnNext(PriceUpdate update) {
+            received.add(update);
+        }
+
+        List<PriceUpdate> readAll() {
+            request(Long.MAX_VALUE);
+            return received;
+        }
+    }
+
+    private static void offerTrades(PriceSubscriber subscriber, int trades) {
+        for (int i = 0; i < trades; i++) {
+            subscriber.offer(PriceUpdate.of("T" + i, i, i, i, i));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trading.blotter.config.IndexProperties;
+import org.elasticsearch.client.Request;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradeIndexResolverTest {
+
+    private static final String ALIAS = "trades";
+    private static final String LEGACY = "trades-legacy";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final IndexProperties properties = new IndexProperties();
+
+    @Test
+    void writesEachTradeToThePartitionOfItsTradeDate() {
+        TradeIndexResolver resolver = resolver(List.of());
+        String base = resolver.getBaseName();
+
+        assertEquals(base + "-2024.03", resolver.writeIndex(LocalDate.of(2024, 3, 31)));
+        assertEquals(base + "-undated", resolver.writeIndex(null));
+
+        properties.setPartitioning(IndexProperties.Partitioning.YEAR);
+        assertEquals(base + "-2024", resolver.writeIndex(LocalDate.of(2024, 3, 31)));
+    }
+
+    @Test
+    void searchesOnlyOverlappingPartitionsAndIndicesOutsideTheLayout() {
+        TradeIndexResolver resolver = monthlyResolver();
+        String base = resolver.getBaseName();
+
+        assertEquals(Set.of(base + "-2024.02", base + "-2024.03", LEGACY),
+                searched(resolver, LocalDate.of(2024, 2, 15), LocalDate.of(2024, 3, 1)));
+        assertEquals(Set.of(base + "-2024.01", LEGACY),
+                searched(resolver, LocalDate.of(2024, 1, 31), LocalDate.of(2024, 1, 31)));
+        // The undated partition is a partition, it never overlaps a date range
+        assertFalse(searched(resolver, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31))
+                .contains(base + "-undated"));
+    }
+
+    @Test
+    void fallsBackToTheAliasWhenItCannotPrune() {
+        TradeIndexResolver resolver = monthlyResolver();
+        LocalDate from = LocalDate.of(2024, 1, 1);
+
+        assertEquals(Set.of(ALIAS), searched(resolver, null, from));
+        assertEquals(Set.of(ALIAS), searched(resolver, from, null));
+        assertEquals(Set.of(ALIAS), searched(resolver, from, from.minusDays(1)));
+
+        properties.setMaxPartitionsPerQuery(2);
+        assertEquals(Set.of(ALIAS), searched(resolver, from, LocalDate.of(2024, 3, 1)));
+
+        properties.setPartitioning(IndexProperties.Partitioning.NONE);
+        assertEquals(Set.of(ALIAS), searched(resolver, from, from));
+    }
+
+    @Test
+    void searchesOnlyIndicesOutsideTheLayoutWhenNoPartitionOverlaps() {
+        TradeIndexResolver resolver = resolver(List.of("2024.01"));
+
+        assertEquals(Set.of(LEGACY), searched(resolver, LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 31)));
+    }
+
+    @Test
+    void partitionPeriodsEndOnTheirLastDay() {
+        TradeIndexResolver resolver = resolver(List.of());
+        String base = resolver.getBaseName();
+
+        assertEquals(LocalDate.of(2024, 2, 29), resolver.periodEnd(base + "-2024.02"));
+        assertNull(resolver.periodEnd(base + "-undated"));
+        assertNull(resolver.periodEnd(LEGACY));
+        assertTrue(resolver.isPartition(base + "-undated"));
+        assertFalse(resolver.isPartition(LEGACY));
+    }
+
+    private TradeIndexResolver monthlyResolver() {
+        return resolver(List.of("2024.01", "2024.02", "2024.03", "2024.04", "undated"));
+    }
+
+    /**
+     * A resolver whose alias holds the monthly partitions of {@code periods} and one legacy index.
+     */
+    private TradeIndexResolver resolver(List<String> periods) {
+        String base = ALIAS + "-v" + IndexTemplateService.TEMPLATE_VERSION;
+        ObjectNode aliases = objectMapper.createObjectNode();
+        aliases.putObject(LEGACY).putObject("aliases").putObject(ALIAS);
+        for (String period : periods) {
+            aliases.putObject(base + "-" + period).putObject("aliases").putObject(ALIAS);
+        }
+        ElasticsearchRestOperations restOperations = new ElasticsearchRestOperations(null, objectMapper) {
+            @Override
+            public Mono<JsonNode> perform(Request request) {
+                return Mono.just(aliases);
+            }
+        };
+        TradeIndexResolver resolver = new TradeIndexResolver(restOperations, objectMapper, properties, ALIAS);
+        resolver.refreshMembership().block();
+        return resolver;
+    }
+
+    private static Set<String> searched(TradeIndexResolver resolver, LocalDate from, LocalDate to) {
+        return new TreeSet<>(Arrays.asList(resolver.searchIndices(from, to).getIndexNames()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.trading.blotter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.TradeSearchRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TradePagingServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    // Cursor encoding needs neither Elasticsearch nor the search service
+    private final TradePagingService pagingService = new TradePagingService(null, null, objectMapper,
+            new SearchProperties());
+
+    @Test
+    void cursorsRoundTripThePitAndTheRequest() {
+        TradeSearchRequest request = TradeSearchRequest.builder()
+                .book("EMEA_RATES")
+                .tradeDateFrom(LocalDate.of(2024, 1, 1))
+                .tradeDateTo(LocalDate.of(2024, 3, 31))
+                .requestedFields(List.of("tradeId", "pnl"))
+                .pageSize(250)
+                .searchAfter(new Object[]{"2024-03-01", "TRD000042"})
+                .build();
+
+        String token = pagingService.encode(new TradePagingService.PageCursor("pit-id", request));
+        TradePagingService.PageCursor decoded = pagingService.decode(token);
+
+        assertFalse(token.contains("=") || token.contains("+") || token.contains("/"), "URL-safe, unpadded");
+        assertEquals("pit-id", decoded.pitId());
+        assertEquals(request.getBook(), decoded.request().getBook());
+        assertEquals(request.getTradeDateFrom(), decoded.request().getTradeDateFrom());
+        assertEquals(request.getTradeDateTo(), decoded.request().getTradeDateTo());
+        assertEquals(request.getRequestedFields(), decoded.request().getRequestedFields());
+        assertEquals(250, decoded.request().getPageSize());
+        assertArrayEquals(request.getSearchAfter(), decoded.request().getSearchAfter());
+    }
+
+    @Test
+    void rejectsUnreadableCursors() {
+        for (String token : List.of("not base64!", encodeRaw("{not json"), encodeRaw("{\"pitId\":\"p\"}"))) {
+            ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                    () -> pagingService.decode(token));
+            assertEquals(HttpStatus.BAD_REQUEST, error.getStatusCode(), token);
+        }
+    }
+
+    @Test
+    void rejectsCursorsWithAnOutOfRangePageSize() {
+        for (int pageSize : new int[]{0, -1, 1001}) {
+            String token = pagingService.encode(new TradePagingService.PageCursor("pit-id",
+                    TradeSearchRequest.builder().pageSize(pageSize).build()));
+            assertThrows(ResponseStatusException.class, () -> pagingService.decode(token));
+        }
+    }
+
+    private static String encodeRaw(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
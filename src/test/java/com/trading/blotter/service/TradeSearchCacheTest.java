@@ -0,0 +1,142 @@
+package com.trading.blotter.service;
+
+import com.trading.blotter.config.SearchProperties;
+import com.trading.blotter.dto.TradeSearchRequest;
+import com.trading.blotter.dto.TradeSearchResponse;
+import com.trading.blotter.model.TradeDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TradeSearchCacheTest {
+
+    private final SearchProperties properties = new SearchProperties();
+
+    @Test
+    void servesAPageUntilItExpires() throws InterruptedException {
+        properties.getCache().setTtl(Duration.ofMillis(50));
+        TradeSearchCache cache = newCache();
+        TradeSearchRequest request = request("BOOK1");
+
+        cache.put("k", request, response(1), cache.generation());
+        assertNotNull(cache.get("k"));
+
+        Thread.sleep(80);
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedPageBeyondMaxEntries() {
+        properties.getCache().setMaxEntries(2);
+        TradeSearchCache cache = newCache();
+        TradeSearchRequest request = request("BOOK1");
+
+        cache.put("a", request, response(1), cache.generation());
+        cache.put("b", request, response(1), cache.generation());
+        cache.get("a");
+        cache.put("c", request, response(1), cache.generation());
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    void evictsBeyondMaxWeightAndSkipsPagesHeavierThanIt() {
+        TradeSearchRequest request = request("BOOK1");
+        long pageWeight = TradeSearchCache.weigh(request, 10);
+        properties.getCache().setMaxWeightBytes(pageWeight * 2);
+        TradeSearchCache cache = newCache();
+
+        cache.put("a", request, response(10), cache.generation());
+        cache.put("b", request, response(10), cache.generation());
+        cache.put("c", request, response(10), cache.generation());
+        cache.put("huge", request, response(30), cache.generation());
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNull(cache.get("huge"));
+    }
+
+    @Test
+    void dropsPagesOfSearchesStartedBeforeAnInvalidation() {
+        TradeSearchCache cache = newCache();
+        TradeSearchRequest request = request("BOOK1");
+        long generation = cache.generation();
+
+        cache.invalidateAll();
+        cache.put("k", request, response(1), generation);
+        assertNull(cache.get("k"));
+
+        cache.put("k", request, response(1), cache.generation());
+        assertNotNull(cache.get("k"));
+    }
+
+    @Test
+    void copiesPagesInAndOut() {
+        TradeSearchCache cache = newCache();
+        TradeSearchResponse response = response(1);
+        cache.put("k", request("BOOK1"), response, cache.generation());
+
+        response.getTrades().get(0).getAdditionalFields().put("field1", "changed");
+        TradeSearchResponse cached = cache.get("k");
+        cached.getTrades().get(0).setBook("changed");
+
+        assertEquals("value", cache.get("k").getTrades().get(0).getAdditionalFields().get("field1"));
+        assertEquals("BOOK1", cache.get("k").getTrades().get(0).getBook());
+    }
+
+    @Test
+    void keysIgnoreColumnOrderButNotFilterValues() {
+        TradeSearchRequest columns = request("BOOK1").toBuilder().requestedFields(List.of("pnl", "book", "pnl")).build();
+        TradeSearchRequest reordered = request("BOOK1").toBuilder().requestedFields(List.of("book", "pnl")).build();
+        assertEquals(TradeSearchCache.keyOf(columns), TradeSearchCache.keyOf(reordered));
+
+        // A separator inside a value can't make two different requests share a key
+        TradeSearchRequest injected = TradeSearchRequest.builder().book("X|trader=Y").build();
+        TradeSearchRequest split = TradeSearchRequest.builder().book("X").trader("Y").build();
+        assertNotEquals(TradeSearchCache.keyOf(injected), TradeSearchCache.keyOf(split));
+
+        TradeSearchRequest noSort = TradeSearchRequest.builder().sortField(null).sortOrder(null).build();
+        assertNotNull(TradeSearchCache.keyOf(noSort));
+    }
+
+    private TradeSearchCache newCache() {
+        return new TradeSearchCache(properties, new SimpleMeterRegistry());
+    }
+
+    private static TradeSearchRequest request(String book) {
+        return TradeSearchRequest.builder()
+                .book(book)
+                .requestedFields(List.of("tradeId", "book", "field1"))
+                .build();
+    }
+
+    private static TradeSearchResponse response(int trades) {
+        List<TradeDocument> documents = new ArrayList<>();
+        for (int i = 0; i < trades; i++) {
+            Map<String, Object> additionalFields = new HashMap<>();
+            additionalFields.put("field1", "value");
+            documents.add(TradeDocument.builder()
+                    .tradeId("TRD" + i)
+                    .book("BOOK1")
+                    .additionalFields(additionalFields)
+                    .build());
+        }
+        return TradeSearchResponse.builder()
+                .trades(documents)
+                .lastSearchAfter(new Object[]{"2024-01-01", "TRD" + trades})
+                .build();
+    }
+}
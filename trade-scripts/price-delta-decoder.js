@@ -0,0 +1,120 @@
+// Reference decoder for the binary price stream (Accept: application/vnd.blotter.price-delta).
+//
+// stream := header frame*
+// header := 'P' 'D' version:u8 scale:u8
+// frame  := tradeIdLength:varint tradeId:utf8 timestamp:varint mask:varint value*
+// value  := zigzag varint of the fixed-point value (scale decimals)
+//
+// Bit i of the mask is column ordinal i of GET /api/trades/columns, one value per set bit
+// in ascending bit order. Decoded updates have the same shape as the JSON "price-update" events.
+//
+// Usage:
+//   const columns = await (await fetch('/api/trades/columns')).json();
+//   for await (const update of streamPriceDeltas('/api/trades/prices/stream?tradeIds=TRD000001', columns)) { ... }
+
+export async function* streamPriceDeltas(url, columns) {
+  const response = await fetch(url, { headers: { Accept: 'application/vnd.blotter.price-delta' } });
+  const reader = response.body.getReader();
+  const decoder = new PriceDeltaDecoder(columns);
+  for (;;) {
+    const { value, done } = await reader.read();
+    if (done) return;
+    yield* decoder.push(value);
+  }
+}
+
+export class PriceDeltaDecoder {
+  constructor(columns) {
+    this.fieldNames = columns.map(column => column.fieldName);
+    this.pending = new Uint8Array(0);
+    this.headerRead = false;
+    this.scale = 2;
+    this.textDecoder = new TextDecoder();
+  }
+
+  // Feeds a network chunk, returns the updates completed by it. Frames may span chunks.
+  push(chunk) {
+    const bytes = new Uint8Array(this.pending.length + chunk.length);
+    bytes.set(this.pending);
+    bytes.set(chunk, this.pending.length);
+
+    const updates = [];
+    let pos = 0;
+    if (!this.headerRead) {
+      if (bytes.length < 4) {
+        this.pending = bytes;
+        return updates;
+      }
+      if (bytes[0] !== 0x50 || bytes[1] !== 0x44 || bytes[2] !== 1) {
+        throw new Error('Unsupported price delta stream');
+      }
+      this.scale = bytes[3];
+      this.headerRead = true;
+      pos = 4;
+    }
+
+    for (;;) {
+      const frame = this.readFrame(bytes, pos);
+      if (frame === null) break;
+      updates.push(frame.update);
+      pos = frame.end;
+    }
+    this.pending = bytes.slice(pos);
+    return updates;
+  }
+
+  readFrame(bytes, start) {
+    try {
+      const cursor = { bytes, pos: start };
+      const idLength = readVarint(cursor);
+      if (cursor.pos + idLength > bytes.length) return null;
+      const tradeId = this.textDecoder.decode(bytes.subarray(cursor.pos, cursor.pos + idLength));
+      cursor.pos += idLength;
+      const timestamp = readVarint(cursor);
+      const mask = readVarintBig(cursor);
+
+      const updatedFields = {};
+      const divisor = 10 ** this.scale;
+      for (let bit = 0; bit < 64; bit++) {
+        if ((mask >> BigInt(bit)) & 1n) {
+          updatedFields[this.fieldNames[bit]] = unzigzag(readVarint(cursor)) / divisor;
+        }
+      }
+      return { update: { tradeId, timestamp, updatedFields }, end: cursor.pos };
+    } catch (e) {
+      if (e === INCOMPLETE) return null;
+      throw e;
+    }
+  }
+}
+
+const INCOMPLETE = Symbol('incomplete');
+
+// Plain Number arithmetic: exact up to 2^53, which covers timestamps and fixed-point prices
+function readVarint(cursor) {
+  let value = 0;
+  let factor = 1;
+  for (;;) {
+    if (cursor.pos >= cursor.bytes.length) throw INCOMPLETE;
+    const b = cursor.bytes[cursor.pos++];
+    value += (b & 0x7f) * factor;
+    if ((b & 0x80) === 0) return value;
+    factor *= 128;
+  }
+}
+
+function readVarintBig(cursor) {
+  let value = 0n;
+  let shift = 0n;
+  for (;;) {
+    if (cursor.pos >= cursor.bytes.length) throw INCOMPLETE;
+    const b = cursor.bytes[cursor.pos++];
+    value |= BigInt(b & 0x7f) << shift;
+    if ((b & 0x80) === 0) return value;
+    shift += 7n;
+  }
+}
+
+function unzigzag(value) {
+  return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+}
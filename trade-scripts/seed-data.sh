@@ -1,3 +1,10 @@
+# Faster: bulk load through the app instead of the loops below
+#   java -jar target/trades-blotter-*.jar generate-data 1000000
+#   python trade-data-ingest.py --ndjson 100000 | curl -s -H 'Content-Type: application/x-ndjson' \
+#       --data-binary @- http://localhost:8085/api/trades/ingest
+# The loops below write to the bare trades alias, which only takes writes with
+# blotter.index.partitioning=none; with time partitions, load through the app as above.
+
 # Seed 1,000 trades (run 10 times)
 for i in {1..10}; do ./seed-data.sh; done
 
@@ -4,6 +4,8 @@ import random
 from datetime import datetime, timedelta
 
 ES_URL = "http://localhost:9200"
+APP_URL = "http://localhost:8085"
+# Only a single index takes writes through the alias: --es needs blotter.index.partitioning=none
 INDEX = "trades"
 
 BOOKS = ["EMEA_RATES", "US_RATES", "ASIA_RATES", "EMEA_FX", "US_FX"]
@@ -47,10 +49,25 @@ def generate_trade(index):
         "additionalFields": additional_fields
     }
 
-def bulk_insert(trades):
+def app_insert(trades):
+    # The app writes each trade to the partition of its tradeDate, routed as the index layout asks
+    response = requests.post(
+        f"{APP_URL}/api/trades/ingest",
+        headers={"Content-Type": "application/x-ndjson"},
+        data="\n".join(json.dumps(trade) for trade in trades) + "\n"
+    )
+    response.raise_for_status()
+    return {"errors": response.json().get("failed", 0) > 0}
+
+def bulk_insert(trades, route_by_book=False):
     bulk_data = []
     for trade in trades:
-        bulk_data.append(json.dumps({"index": {"_index": INDEX, "_id": trade["tradeId"]}}))
+        # Must match blotter.index.route-by-book: the same _id written with and without routing
+        # can end up as two live copies on different shards
+        action = {"_index": INDEX, "_id": trade["tradeId"]}
+        if route_by_book:
+            action["routing"] = trade["book"]
+        bulk_data.append(json.dumps({"index": action}))
         bulk_data.append(json.dumps(trade))
     
     bulk_body = "\n".join(bulk_data) + "\n"
@@ -63,25 +80,37 @@ def bulk_insert(trades):
     
     return response.json()
 
-def ingest_trades(total_count, batch_size=1000):
+def ingest_trades(total_count, batch_size=1000, direct=False, route_by_book=False):
     print(f"Ingesting {total_count} trades in batches of {batch_size}...")
+    insert = (lambda trades: bulk_insert(trades, route_by_book)) if direct else app_insert
     
     for start in range(1, total_count + 1, batch_size):
         end = min(start + batch_size, total_count + 1)
         trades = [generate_trade(i) for i in range(start, end)]
         
-        result = bulk_insert(trades)
+        result = insert(trades)
         
         if result.get("errors"):
             print(f"Errors in batch {start}-{end}")
         else:
             print(f"Inserted trades {start}-{end}")
     
-    # Refresh index
-    requests.post(f"{ES_URL}/{INDEX}/_refresh")
+    if direct:
+        # The app drops its cached search pages after its own ingest, direct writes have to ask
+        requests.post(f"{ES_URL}/{INDEX}/_refresh")
+        requests.delete(f"{APP_URL}/api/trades/search/cache")
     print("Data ingestion complete!")
 
+def print_ndjson(total_count):
+    # One document per line, for POST /api/trades/ingest
+    for i in range(1, total_count + 1):
+        print(json.dumps(generate_trade(i)))
+
 if __name__ == "__main__":
     import sys
-    count = int(sys.argv[1]) if len(sys.argv) > 1 else 10000
-    ingest_trades(count)
\ No newline at end of file
+    args = [arg for arg in sys.argv[1:] if not arg.startswith("--")]
+    count = int(args[0]) if args else 10000
+    if "--ndjson" in sys.argv:
+        print_ndjson(count)
+    else:
+        ingest_trades(count, direct="--es" in sys.argv, route_by_book="--route-by-book" in sys.argv)
\ No newline at end of file